@@ -12,10 +12,20 @@ if [ -f \$PID_FILE ]; then
     fi
 fi
 
-if [ -f ./config/logback.xml ]; then
-    JAVA_OPTS="\$JAVA_OPTS -Dlogging.config=file:./config/logback.xml"
-fi
+# HEALTHCHECK_MODE=lite starts the lightweight server (no Spring context) from the same jar
+if [ "\$HEALTHCHECK_MODE" = "lite" ]; then
+    if [ -f ./config/logback.xml ]; then
+        JAVA_OPTS="\$JAVA_OPTS -Dlogback.configurationFile=./config/logback.xml"
+    fi
 
-java \$JAVA_OPTS -jar ${jarName} & echo \$! > \$PID_FILE
+    java \$JAVA_OPTS -cp ${jarName} -Dloader.main=com.markwal.sdl.healthcheck.lite.LiteHealthCheckServer \\
+        org.springframework.boot.loader.PropertiesLauncher & echo \$! > \$PID_FILE
+else
+    if [ -f ./config/logback.xml ]; then
+        JAVA_OPTS="\$JAVA_OPTS -Dlogging.config=file:./config/logback.xml"
+    fi
+
+    java \$JAVA_OPTS -jar ${jarName} & echo \$! > \$PID_FILE
+fi
 
 echo "Started Service Healthceck"
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck;
+
+/**
+ * The outcome of a service check. The status is the value reported as <code>serviceStatus</code>, for HTTP errors it
+ * includes the status code of the response (see {@link ServiceStatus#getServiceStatus()}).
+ */
+public enum CheckOutcome {
+
+    OK("ok"),
+    DISABLED("disabled"),
+    HTTP_ERROR("error-"),
+    ASSERTION_FAILED("error-assertion"),
+    CONNECT_ERROR("error-connect"),
+    TIMEOUT("error-timeout"),
+    DEPENDENCY_FAILED("dependency-failed"),
+    BUDGET_EXHAUSTED("error-budget"),
+    ERROR("error");
+
+    private static final int MIN_HTTP_CODE = 100;
+    private static final int MAX_HTTP_CODE = 599;
+    private static final String[] HTTP_ERROR_STATUSES = new String[MAX_HTTP_CODE - MIN_HTTP_CODE + 1];
+
+    static {
+        for (int code = MIN_HTTP_CODE; code <= MAX_HTTP_CODE; code++) {
+            HTTP_ERROR_STATUSES[code - MIN_HTTP_CODE] = HTTP_ERROR.status + code;
+        }
+    }
+
+    private final String status;
+
+    CheckOutcome(String status) {
+        this.status = status;
+    }
+
+    /**
+     * @param httpCode The status code of the response, only used for {@link #HTTP_ERROR}.
+     * @return The status as reported to clients, the strings are shared so no string is built per check.
+     */
+    public String getStatus(int httpCode) {
+        if (this != HTTP_ERROR) {
+            return this.status;
+        }
+        if (httpCode >= MIN_HTTP_CODE && httpCode <= MAX_HTTP_CODE) {
+            return HTTP_ERROR_STATUSES[httpCode - MIN_HTTP_CODE];
+        }
+        return this.status + httpCode;
+    }
+
+    /**
+     * A disabled service is still running, so services depending on it can be checked.
+     *
+     * @return true if the outcome does not count as a failure of the service.
+     */
+    public boolean isHealthy() {
+        return this == OK || this == DISABLED;
+    }
+
+}
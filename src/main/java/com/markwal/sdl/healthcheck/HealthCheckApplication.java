@@ -40,6 +40,7 @@ public class HealthCheckApplication {
 
         //ApplicationContext ctx = app.run(args);
         app.run(args);
+        StartupMetrics.log("spring");
     }
 
 }
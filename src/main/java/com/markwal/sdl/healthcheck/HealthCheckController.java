@@ -16,152 +16,140 @@
 
 package com.markwal.sdl.healthcheck;
 
-import com.markwal.sdl.healthcheck.config.Configuration;
+import com.markwal.sdl.healthcheck.config.GroupNotFoundException;
 import com.markwal.sdl.healthcheck.config.ServiceNotFoundException;
+import com.markwal.sdl.healthcheck.jfr.RecordingInfo;
+import com.markwal.sdl.healthcheck.jfr.RecordingNotFoundException;
+import com.markwal.sdl.healthcheck.trace.SlowCheck;
+import com.markwal.sdl.healthcheck.trace.TraceEventFormat;
+import com.markwal.sdl.healthcheck.transport.TransportStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 
 @RestController
 public class HealthCheckController {
 
     private static final Logger LOG = LoggerFactory.getLogger(HealthCheckController.class);
-    private final Object connectionsLock = new Object();
+
     @Autowired
-    private Configuration config;
-    private Map<String, ServiceConnection> connections = new HashMap<String, ServiceConnection>();
+    private HealthCheckEngine engine;
 
     @RequestMapping(value = "/reload")
     public String reload() {
-        this.config.resetServicesInfo();
-        this.clearConnections();
+        this.engine.reload();
         return "ok";
     }
 
-    private void clearConnections() {
-        synchronized (this.connectionsLock) {
-            // there are no resources in the connection that need closing, so we just empty the map
-            this.connections.clear();
-        }
-    }
-
     @RequestMapping(value = "/all", produces = "application/json")
     public
     @ResponseBody
-    List<ServiceStatus> all() {
-        List<ServiceStatus> statuses = new ArrayList<ServiceStatus>();
-
-        for (String name : this.config.getAllServiceNames()) {
-            ServiceStatus status;
-
-            try {
-                status = this.checkService(name);
-            } catch (HealthCheckException e) {
-                LOG.warn("Exception while checking status for service '" + name + " ': " + e.getMessage(), e);
-                status = new ServiceStatus(name, "error", "Exception: " + e.getMessage());
-            }
-            statuses.add(status);
+    List<ServiceStatus> all(@RequestParam(value = "env", required = false) String environment,
+                            @RequestParam(value = "level", required = false) String level) {
+        if (HealthCheckEngine.isTcpLevel(level)) {
+            return this.engine.sweepServices(this.engine.selectServices(null, environment));
         }
-
-        return statuses;
+        if (environment != null) {
+            return this.engine.checkEnvironment(environment);
+        }
+        return this.engine.checkAll();
     }
 
-    @RequestMapping(value = "/status/{serviceName}", produces = "application/json")
+    @RequestMapping(value = "/group/{tag}", produces = "application/json")
     public
     @ResponseBody
-    ResponseEntity<ServiceStatus> status(@PathVariable String serviceName) {
-        if (LOG.isInfoEnabled()) {
-            LOG.info("Request /status for service " + serviceName);
+    List<ServiceStatus> group(@PathVariable String tag,
+                              @RequestParam(value = "env", required = false) String environment,
+                              @RequestParam(value = "level", required = false) String level) {
+        if (HealthCheckEngine.isTcpLevel(level)) {
+            return this.engine.sweepServices(this.engine.selectServices(tag, environment));
         }
+        return this.engine.checkGroup(tag, environment);
+    }
 
-        ServiceStatus status = this.checkService(serviceName);
-
-        if (status.getServiceStatus().equalsIgnoreCase("ok")) {
-            if (LOG.isInfoEnabled()) {
-                LOG.info("Successful health check result for " + serviceName);
-            }
-            return new ResponseEntity<ServiceStatus>(status, HttpStatus.OK);
-        } else {
-            LOG.warn("Failed health check result for " + serviceName + ": " + status.getStatusMessage());
-            return new ResponseEntity<ServiceStatus>(status, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+    @RequestMapping(value = "/schedule", produces = "application/json")
+    public
+    @ResponseBody
+    List<ProbeScheduleEntry> schedule() {
+        return this.engine.getSchedule();
     }
 
-    private ServiceStatus checkService(String serviceName) {
+    @RequestMapping(value = "/stats/transport", produces = "application/json")
+    public
+    @ResponseBody
+    TransportStats transportStats() {
+        return this.engine.getTransportStats();
+    }
 
-        if (this.isServiceDisabled(serviceName)) {
-            return new ServiceStatus(serviceName, "disabled", "Disabled by status file");
+    @RequestMapping(value = "/debug/slow-checks", produces = "application/json")
+    public
+    @ResponseBody
+    Object slowChecks(@RequestParam(value = "format", required = false) String format) {
+        List<SlowCheck> checks = this.engine.getSlowChecks();
+        if ("trace".equals(format)) {
+            return TraceEventFormat.toTrace(checks);
         }
-
-        ServiceConnection checker = this.getServiceConnection(serviceName);
-        ServiceStatus serviceStatus = checker.checkStatus();
-
-        return serviceStatus;
+        return checks;
     }
 
-    /**
-     * Checks if a service is disabled. A service is disabled if a file with the same name as the service name exists
-     * in the 'disable services location' which is set by a property 'config.disable.services.location' in the
-     * application.properties file.
-     * <p>
-     * Note that no check is done if the service actually exists in the configuration, if a file with the service name
-     * exists a status of 'disabled' is returned (for performance reasons).
-     *
-     * @param serviceName The name of the service to check.
-     * @return True if the service is disabled.
-     */
-    private boolean isServiceDisabled(String serviceName) {
-        File disableServicesLocation = config.getDisableServicesLocation();
-
-        if (LOG.isTraceEnabled()) {
-            LOG.trace("Checking if service '" + serviceName + "' is disabled; check location: '" + disableServicesLocation + "'");
-        }
+    @RequestMapping(value = "/admin/jfr/start", produces = "application/json")
+    public
+    @ResponseBody
+    RecordingInfo startRecording(@RequestParam(value = "duration", defaultValue = "60") int duration) {
+        return this.engine.startRecording(duration);
+    }
 
-        if (disableServicesLocation != null && disableServicesLocation.isDirectory()) {
-            File disabledFile = new File(config.getDisableServicesLocation(), serviceName);
-            if (disabledFile.exists()) {
-                if (LOG.isInfoEnabled()) {
-                    LOG.info("Service '" + serviceName + "' is disabled by file: '" + disabledFile.getAbsolutePath() + "'");
-                }
-                return true;
-            } else if (LOG.isTraceEnabled()) {
-                LOG.info("File: '" + disabledFile.getAbsolutePath() + "' does not exist, service is not disabbled.");
+    @RequestMapping(value = "/admin/jfr", produces = "application/json")
+    public
+    @ResponseBody
+    List<RecordingInfo> recordings() {
+        return this.engine.getRecordings();
+    }
 
-            }
-        }
+    @RequestMapping(value = "/admin/jfr/{name:.+}")
+    public ResponseEntity<FileSystemResource> recording(@PathVariable String name) {
+        File file = this.engine.getRecordingFile(name);
 
-        return false;
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentLength(file.length());
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getName() + "\"");
+        return new ResponseEntity<FileSystemResource>(new FileSystemResource(file), headers, HttpStatus.OK);
     }
 
-    private ServiceConnection getServiceConnection(String serviceName) {
-        if (LOG.isInfoEnabled()) {
-            LOG.info("Looking up connection to service: " + serviceName);
+    @RequestMapping(value = "/status/{serviceName}", produces = "application/json")
+    public
+    @ResponseBody
+    ResponseEntity<ServiceStatus> status(@PathVariable String serviceName) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Request /status for service " + serviceName);
         }
 
-        synchronized (this.connectionsLock) {
-            ServiceConnection conn = this.connections.get(serviceName);
-            if (conn == null) {
-                if (LOG.isInfoEnabled()) {
-                    LOG.info("Creating new connection for service: " + serviceName);
-                }
+        ServiceStatus status = this.engine.requestStatus(serviceName);
 
-                conn = new ServiceConnection(this.config.getServiceInfo(serviceName));
-                this.connections.put(serviceName, conn);
+        if (status.isOk()) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Successful health check result for " + serviceName);
             }
-
-            return conn;
+            return new ResponseEntity<ServiceStatus>(status, HttpStatus.OK);
+        } else {
+            // the failure itself is reported in the check event log
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Failed health check result for " + serviceName + ": " + status.getStatusMessage());
+            }
+            return new ResponseEntity<ServiceStatus>(status, HttpStatus.INTERNAL_SERVER_ERROR);
         }
-
     }
 
     @ExceptionHandler(ServiceNotFoundException.class)
@@ -173,6 +161,42 @@ public class HealthCheckController {
         return new ErrorResponse("ServiceNotFoundException: " + exc.getMessage());
     }
 
+    @ExceptionHandler(GroupNotFoundException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public
+    @ResponseBody
+    ErrorResponse handleGroupNotFoundException(Exception exc) {
+        LOG.warn("GroupNotFoundException", exc);
+        return new ErrorResponse("GroupNotFoundException: " + exc.getMessage());
+    }
+
+    @ExceptionHandler(RecordingNotFoundException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public
+    @ResponseBody
+    ErrorResponse handleRecordingNotFoundException(Exception exc) {
+        LOG.warn("RecordingNotFoundException", exc);
+        return new ErrorResponse("RecordingNotFoundException: " + exc.getMessage());
+    }
+
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public
+    @ResponseBody
+    ErrorResponse handleMethodArgumentTypeMismatchException(MethodArgumentTypeMismatchException exc) {
+        LOG.warn("MethodArgumentTypeMismatchException: " + exc.getMessage());
+        return new ErrorResponse("Invalid value '" + exc.getValue() + "' for parameter '" + exc.getName() + "'");
+    }
+
+    @ExceptionHandler(InvalidParameterException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public
+    @ResponseBody
+    ErrorResponse handleInvalidParameterException(Exception exc) {
+        LOG.warn("InvalidParameterException: " + exc.getMessage());
+        return new ErrorResponse(exc.getMessage());
+    }
+
     @ExceptionHandler(TokenException.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public
@@ -0,0 +1,739 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck;
+
+import com.markwal.sdl.healthcheck.config.Configuration;
+import com.markwal.sdl.healthcheck.config.EnvVarSubstitutor;
+import com.markwal.sdl.healthcheck.config.GroupNotFoundException;
+import com.markwal.sdl.healthcheck.config.ServiceConfig;
+import com.markwal.sdl.healthcheck.config.ServiceDependencyGraph;
+import com.markwal.sdl.healthcheck.config.ServiceNotFoundException;
+import com.markwal.sdl.healthcheck.event.CheckEventLog;
+import com.markwal.sdl.healthcheck.jfr.FlightRecordings;
+import com.markwal.sdl.healthcheck.jfr.JfrEvent;
+import com.markwal.sdl.healthcheck.jfr.JfrEvents;
+import com.markwal.sdl.healthcheck.jfr.RecordingInfo;
+import com.markwal.sdl.healthcheck.jmx.HealthCheckEngineManagement;
+import com.markwal.sdl.healthcheck.jmx.ManagementRegistry;
+import com.markwal.sdl.healthcheck.jmx.ServiceConnectionManagement;
+import com.markwal.sdl.healthcheck.trace.CheckTracer;
+import com.markwal.sdl.healthcheck.trace.SlowCheck;
+import com.markwal.sdl.healthcheck.transport.HedgingPolicy;
+import com.markwal.sdl.healthcheck.transport.ProbeTransport;
+import com.markwal.sdl.healthcheck.transport.TcpResult;
+import com.markwal.sdl.healthcheck.transport.TcpSweep;
+import com.markwal.sdl.healthcheck.transport.TcpTarget;
+import com.markwal.sdl.healthcheck.transport.TransportStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes the health checks for the configured services and keeps the connections to the services.
+ */
+@Component
+public class HealthCheckEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HealthCheckEngine.class);
+    private final Object connectionsLock = new Object();
+    private final EnvVarSubstitutor envVarSubstitutor = new EnvVarSubstitutor();
+    private Configuration config;
+    private Map<String, ServiceConnection> connections = new HashMap<String, ServiceConnection>();
+    // the most recent TCP level result of each service, returned when the probe budget is exhausted
+    private final Map<String, ServiceStatus> lastSweepStatuses = new ConcurrentHashMap<String, ServiceStatus>();
+    private TokenBucket globalProbeBucket;
+    private ProbeScheduler scheduler;
+    private CheckEventLog eventLog;
+    private ProbeTransport transport;
+    private HedgingPolicy hedgingPolicy;
+    private CheckTracer tracer;
+    private FlightRecordings recordings;
+    private ThreadPoolExecutor checkExecutor;
+    private ManagementRegistry management;
+    private volatile int checkShardSize;
+    private volatile int probeInterval;
+
+    @Autowired
+    public HealthCheckEngine(Configuration config) {
+        this.config = config;
+    }
+
+    @PostConstruct
+    public void start() {
+        int checkThreads = Math.max(1, this.config.getCheckThreads());
+        this.checkExecutor = new ThreadPoolExecutor(checkThreads, checkThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("check"));
+        this.checkShardSize = Math.max(1, this.config.getCheckShardSize());
+        this.probeInterval = this.config.getProbeInterval();
+        this.transport = new ProbeTransport(this.getConnectionsPerHost(checkThreads), this.config.getMaxConnections(),
+                this.config.getTlsSessionCacheSize(), this.config.getTlsSessionTimeout(),
+                this.config.getDnsTtl() * 1000L, this.config.getDnsNegativeTtl() * 1000L);
+        this.transport.setTimeouts(this.config.getConnectionRequestTimeout(), this.config.getConnectTimeout(),
+                this.config.getSocketTimeout());
+        this.hedgingPolicy = new HedgingPolicy(this.config.isHedgeEnabled(), this.config.getHedgeBudget(),
+                this.config.getHedgeRatio(), this.config.getHedgeMinDelay(), this.config.getHedgeMinSamples());
+        this.eventLog = new CheckEventLog(this.config.getEventQueueSize(), this.config.getEventSuccessSampleRate());
+        this.eventLog.start();
+        this.tracer = new CheckTracer(this.config.getTraceSampleRate(), this.config.getTraceSlowThreshold(),
+                this.config.getTraceBufferSize(), this.config.getTraceExportFile());
+        this.tracer.start();
+        this.recordings = new FlightRecordings(this.config.isJfrEnabled(), this.config.getJfrDirectory(),
+                this.config.getJfrMaxDuration(), this.config.getJfrMaxFiles());
+        this.scheduler = new ProbeScheduler(this, this.config.getProbeSchedulerThreads());
+        this.management = new ManagementRegistry();
+        this.management.register(ManagementRegistry.getEngineName(),
+                new HealthCheckEngineManagement(this, this.transport));
+        this.prepareServices();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.management.unregisterAll();
+        this.scheduler.shutdown();
+        this.checkExecutor.shutdownNow();
+        this.hedgingPolicy.shutdown();
+        this.eventLog.shutdown();
+        this.tracer.shutdown();
+        try {
+            this.transport.close();
+        } catch (IOException e) {
+            LOG.warn("Exception while closing probe transport: " + e.getMessage());
+        }
+    }
+
+    public TransportStats getTransportStats() {
+        return this.transport.getStats();
+    }
+
+    /**
+     * @return The traces of the most recent slow checks, the most recent first.
+     */
+    public List<SlowCheck> getSlowChecks() {
+        return this.tracer.getSlowChecks();
+    }
+
+    /**
+     * Starts a flight recording with the profile of the application, see {@link FlightRecordings#start(int)}.
+     *
+     * @param duration The duration of the recording in seconds.
+     * @return The started recording.
+     */
+    public RecordingInfo startRecording(int duration) {
+        return this.recordings.start(duration);
+    }
+
+    public List<RecordingInfo> getRecordings() {
+        return this.recordings.getRecordings();
+    }
+
+    public File getRecordingFile(String name) {
+        return this.recordings.getRecordingFile(name);
+    }
+
+    public int getCheckThreads() {
+        return this.checkExecutor.getMaximumPoolSize();
+    }
+
+    /**
+     * Changes the number of threads checking groups of services, running checks are not interrupted.
+     */
+    public void setCheckThreads(int checkThreads) {
+        this.transport.setMaxConnectionsPerHost(this.getConnectionsPerHost(checkThreads));
+        // the core size may never exceed the maximum size, so the order depends on the direction of the change
+        if (checkThreads > this.checkExecutor.getMaximumPoolSize()) {
+            this.checkExecutor.setMaximumPoolSize(checkThreads);
+            this.checkExecutor.setCorePoolSize(checkThreads);
+        } else {
+            this.checkExecutor.setCorePoolSize(checkThreads);
+            this.checkExecutor.setMaximumPoolSize(checkThreads);
+        }
+    }
+
+    /**
+     * The parallel shards can all check services on the same host, and each check can have a hedge or a token
+     * request outstanding, so a host needs two connections per check thread. Otherwise checks wait for a pooled
+     * connection and fail on the pool timeout. A configured number below that is raised.
+     */
+    private int getConnectionsPerHost(int checkThreads) {
+        int required = 2 * checkThreads;
+        int configured = this.config.getMaxConnectionsPerHost();
+        if (configured >= required) {
+            return configured;
+        }
+
+        if (configured > 0) {
+            LOG.warn("config.transport.connections.host (" + configured + ") is too low for " + checkThreads
+                    + " check threads, using " + required + " connections per host");
+        }
+        return required;
+    }
+
+    public int getActiveChecks() {
+        return this.checkExecutor.getActiveCount();
+    }
+
+    public int getQueuedChecks() {
+        return this.checkExecutor.getQueue().size();
+    }
+
+    public int getCheckShardSize() {
+        return this.checkShardSize;
+    }
+
+    public void setCheckShardSize(int checkShardSize) {
+        this.checkShardSize = checkShardSize;
+    }
+
+    /**
+     * @return The default interval in seconds between scheduled probes.
+     */
+    public int getProbeInterval() {
+        return this.probeInterval;
+    }
+
+    /**
+     * Changes the default probe interval and reschedules the probes, services with their own interval are not
+     * affected.
+     */
+    public void setProbeInterval(int probeInterval) {
+        this.probeInterval = probeInterval;
+        this.prepareServices();
+    }
+
+    public int getConnectionCount() {
+        synchronized (this.connectionsLock) {
+            return this.connections.size();
+        }
+    }
+
+    public void reload() {
+        this.config.resetServicesInfo();
+        this.clearConnections();
+        this.prepareServices();
+    }
+
+    /**
+     * Schedules the probes and resolves the host names of the configured services.
+     */
+    private void prepareServices() {
+        this.scheduler.cancelAll();
+
+        Set<String> serviceNames;
+        try {
+            serviceNames = this.config.getAllServiceNames();
+        } catch (HealthCheckException e) {
+            // the configuration is read again on the next request, which reports the error to the caller
+            LOG.warn("Unable to prepare services: " + e.getMessage());
+            return;
+        }
+
+        Set<String> hosts = new HashSet<String>();
+        for (String name : serviceNames) {
+            ServiceConfig serviceConfig = this.config.getServiceInfo(name);
+            this.addHosts(serviceConfig, hosts);
+
+            int interval = this.probeInterval;
+            if (serviceConfig.getProbeInterval() != null) {
+                interval = serviceConfig.getProbeInterval();
+            }
+
+            this.scheduler.schedule(name, interval * 1000L);
+        }
+
+        this.transport.preResolve(hosts);
+    }
+
+    private void addHosts(ServiceConfig serviceConfig, Set<String> hosts) {
+        String host = this.envVarSubstitutor.replace(serviceConfig.getHost());
+        if (host != null) {
+            hosts.add(host);
+        }
+
+        String tokenUrl = this.envVarSubstitutor.replace(serviceConfig.getTokenUrl());
+        if (tokenUrl != null) {
+            try {
+                String tokenHost = new URI(tokenUrl).getHost();
+                if (tokenHost != null) {
+                    hosts.add(tokenHost);
+                }
+            } catch (URISyntaxException e) {
+                LOG.warn("Invalid token URL for service '" + serviceConfig.getName() + "': " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return The probe schedule and token refresh time of all services.
+     */
+    public List<ProbeScheduleEntry> getSchedule() {
+        List<ProbeScheduleEntry> result = new ArrayList<ProbeScheduleEntry>();
+
+        for (String name : new TreeSet<String>(this.config.getAllServiceNames())) {
+            Long tokenRefresh = null;
+            synchronized (this.connectionsLock) {
+                ServiceConnection connection = this.connections.get(name);
+                if (connection != null) {
+                    tokenRefresh = connection.getTokenRefreshTime();
+                }
+            }
+
+            ProbeScheduleEntry entry = this.scheduler.getSchedule(name);
+            if (entry == null) {
+                result.add(new ProbeScheduleEntry(name, 0, 0, null, tokenRefresh));
+            } else {
+                result.add(new ProbeScheduleEntry(name, entry.getInterval(), entry.getPhase(), entry.getNextProbe(), tokenRefresh));
+            }
+        }
+
+        return result;
+    }
+
+    private void clearConnections() {
+        synchronized (this.connectionsLock) {
+            // the connections only share the transport, so there is nothing to close and we just empty the map
+            for (String name : this.connections.keySet()) {
+                this.management.unregister(ManagementRegistry.getConnectionName(name));
+            }
+            this.connections.clear();
+            this.lastSweepStatuses.clear();
+            this.globalProbeBucket = null;
+        }
+    }
+
+    /**
+     * Checks all services, see {@link #checkServices(Collection)}.
+     *
+     * @return The status of all services.
+     */
+    public List<ServiceStatus> checkAll() {
+        return this.checkServices(this.config.getAllServiceNames());
+    }
+
+    /**
+     * @param tag         The tag of the services to check.
+     * @param environment The environment of the services to check, or null for all environments.
+     * @return The status of the services with the tag.
+     */
+    public List<ServiceStatus> checkGroup(String tag, String environment) {
+        return this.checkServices(this.selectServices(tag, environment));
+    }
+
+    /**
+     * @param environment The environment of the services to check.
+     * @return The status of the services in the environment.
+     */
+    public List<ServiceStatus> checkEnvironment(String environment) {
+        return this.checkServices(this.getEnvironmentServices(environment));
+    }
+
+    /**
+     * @param tag         The tag of the services, or null for all tags.
+     * @param environment The environment of the services, or null for all environments.
+     * @return The names of the services with the tag in the environment.
+     */
+    public Collection<String> selectServices(String tag, String environment) {
+        if (tag == null) {
+            if (environment == null) {
+                return this.config.getAllServiceNames();
+            }
+            return this.getEnvironmentServices(environment);
+        }
+
+        List<String> names = this.config.getServiceIndex().getServicesByTag(tag);
+        if (names == null) {
+            throw new GroupNotFoundException("Group '" + tag + "' not found");
+        }
+
+        if (environment != null) {
+            Set<String> inEnvironment = new HashSet<String>(this.getEnvironmentServices(environment));
+            List<String> selected = new ArrayList<String>();
+            for (String name : names) {
+                if (inEnvironment.contains(name)) {
+                    selected.add(name);
+                }
+            }
+            names = selected;
+        }
+
+        return names;
+    }
+
+    private List<String> getEnvironmentServices(String environment) {
+        List<String> names = this.config.getServiceIndex().getServicesByEnvironment(environment);
+        if (names == null) {
+            throw new GroupNotFoundException("Environment '" + environment + "' not found");
+        }
+        return names;
+    }
+
+    /**
+     * Checks a number of services in dependency order. When a dependency of a service is not available the service
+     * itself is not checked but reported with status 'dependency-failed', this prevents every dependent service from
+     * waiting on the same timeouts. Dependencies that are not part of the given services are not checked.
+     * <p>
+     * The services of a dependency level are split in shards which are checked in parallel, the services within a
+     * shard are checked one after the other.
+     *
+     * @param serviceNames The names of the services to check.
+     * @return The status of the services.
+     */
+    public List<ServiceStatus> checkServices(Collection<String> serviceNames) {
+        ServiceDependencyGraph dependencyGraph = this.config.getDependencyGraph();
+        Map<String, ServiceStatus> results = new ConcurrentHashMap<String, ServiceStatus>();
+        List<ServiceStatus> statuses = new ArrayList<ServiceStatus>();
+
+        for (List<String> level : this.groupByLevel(serviceNames, dependencyGraph)) {
+            statuses.addAll(this.checkLevel(level, dependencyGraph, results));
+        }
+
+        return statuses;
+    }
+
+    /**
+     * Checks if the services accept TCP connections on their host and port, without requesting tokens or sending
+     * requests. The services are connected to in parallel from a single thread (see {@link TcpSweep}) with the
+     * connect timeout of the check requests as the deadline, dependencies are not taken into account. Host names that
+     * are not cached are resolved on the check threads.
+     * <p>
+     * A connect counts as a probe of the service: when the probe budget of the service is exhausted the most recent
+     * TCP level result is returned (with its age), or 'error-budget' if there is none.
+     *
+     * @param serviceNames The names of the services to check.
+     * @return The status of the services, with the connect time of the reachable services.
+     */
+    public List<ServiceStatus> sweepServices(Collection<String> serviceNames) {
+        List<String> names = new ArrayList<String>(serviceNames);
+        ServiceStatus[] statuses = new ServiceStatus[names.size()];
+        List<TcpTarget> targets = new ArrayList<TcpTarget>();
+        List<Integer> targetIndexes = new ArrayList<Integer>();
+
+        for (int i = 0; i < statuses.length; i++) {
+            String name = names.get(i);
+            if (this.isServiceDisabled(name)) {
+                statuses[i] = ServiceStatus.disabled(name);
+                continue;
+            }
+
+            if (!this.getServiceConnection(name).getProbeBudget().tryAcquire()) {
+                ServiceStatus previous = this.lastSweepStatuses.get(name);
+                statuses[i] = previous == null ? ServiceStatus.budgetExhausted(name) : previous.asCached();
+                continue;
+            }
+
+            ServiceConfig serviceConfig = this.config.getServiceInfo(name);
+            String host = this.envVarSubstitutor.replace(serviceConfig.getHost());
+            String port = this.envVarSubstitutor.replace(serviceConfig.getPort());
+            Integer portNumber = parsePort(port);
+            if (host == null || portNumber == null) {
+                statuses[i] = ServiceStatus.failure(name, CheckOutcome.ERROR,
+                        "Invalid host '" + host + "' or port '" + port + "'");
+            } else {
+                targets.add(new TcpTarget(host, portNumber));
+                targetIndexes.add(i);
+            }
+        }
+
+        List<TcpResult> results;
+        try {
+            results = new TcpSweep(this.transport, this.checkExecutor, this.config.getTcpConnects()).sweep(targets,
+                    this.transport.getRequestConfig().getConnectTimeout());
+        } catch (IOException e) {
+            throw new HealthCheckException(e);
+        }
+
+        for (int i = 0; i < results.size(); i++) {
+            TcpResult result = results.get(i);
+            int index = targetIndexes.get(i);
+            String name = names.get(index);
+            if (result.isConnected()) {
+                statuses[index] = ServiceStatus.reachable(name, result.getConnectNanos());
+            } else if (result.isTimedOut()) {
+                statuses[index] = ServiceStatus.failure(name, CheckOutcome.TIMEOUT, result.getMessage());
+            } else {
+                statuses[index] = ServiceStatus.failure(name, CheckOutcome.CONNECT_ERROR, result.getMessage());
+            }
+            this.lastSweepStatuses.put(name, statuses[index]);
+        }
+
+        return Arrays.asList(statuses);
+    }
+
+    /**
+     * @return true for level 'tcp' (only check that the ports accept connections), false for a full check (level
+     * 'http' or no level).
+     * @throws InvalidParameterException For any other level.
+     */
+    public static boolean isTcpLevel(String level) {
+        if (level == null || "http".equals(level)) {
+            return false;
+        }
+        if ("tcp".equals(level)) {
+            return true;
+        }
+        throw new InvalidParameterException("level", level);
+    }
+
+    private static Integer parsePort(String port) {
+        if (port == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(port.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private List<List<String>> groupByLevel(Collection<String> serviceNames, ServiceDependencyGraph dependencyGraph) {
+        List<List<String>> levels = new ArrayList<List<String>>();
+
+        for (String name : serviceNames) {
+            int level = dependencyGraph.getLevel(name);
+            if (level == -1) {
+                throw new ServiceNotFoundException(name);
+            }
+            while (levels.size() <= level) {
+                levels.add(new ArrayList<String>());
+            }
+            levels.get(level).add(name);
+        }
+
+        for (List<String> level : levels) {
+            Collections.sort(level);
+        }
+
+        return levels;
+    }
+
+    private List<ServiceStatus> checkLevel(List<String> level, final ServiceDependencyGraph dependencyGraph,
+                                           final Map<String, ServiceStatus> results) {
+        int shardSize = this.checkShardSize;
+
+        // a single shard is checked on the calling thread
+        if (level.size() <= shardSize) {
+            return this.checkShard(level, dependencyGraph, results);
+        }
+
+        List<Future<List<ServiceStatus>>> shards = new ArrayList<Future<List<ServiceStatus>>>();
+        for (int start = 0; start < level.size(); start += shardSize) {
+            final List<String> shard = level.subList(start, Math.min(level.size(), start + shardSize));
+            shards.add(this.checkExecutor.submit(new Callable<List<ServiceStatus>>() {
+                @Override
+                public List<ServiceStatus> call() {
+                    return checkShard(shard, dependencyGraph, results);
+                }
+            }));
+        }
+
+        List<ServiceStatus> statuses = new ArrayList<ServiceStatus>();
+        try {
+            for (Future<List<ServiceStatus>> shard : shards) {
+                statuses.addAll(shard.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HealthCheckException("Interrupted while checking services", e);
+        } catch (ExecutionException e) {
+            throw new HealthCheckException("Exception while checking services: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            for (Future<List<ServiceStatus>> shard : shards) {
+                shard.cancel(true);
+            }
+        }
+
+        return statuses;
+    }
+
+    private List<ServiceStatus> checkShard(List<String> shard, ServiceDependencyGraph dependencyGraph,
+                                           Map<String, ServiceStatus> results) {
+        List<ServiceStatus> statuses = new ArrayList<ServiceStatus>();
+        for (String name : shard) {
+            ServiceStatus status = this.checkServiceAfterDependencies(name, dependencyGraph, results);
+            results.put(name, status);
+            statuses.add(status);
+        }
+        return statuses;
+    }
+
+    private ServiceStatus checkServiceAfterDependencies(String name, ServiceDependencyGraph dependencyGraph,
+                                                        Map<String, ServiceStatus> results) {
+        for (String dependency : dependencyGraph.getDependencies(name)) {
+            ServiceStatus dependencyStatus = results.get(dependency);
+            if (dependencyStatus != null && isFailed(dependencyStatus)) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Skipping check of service '" + name + "', dependency '" + dependency + "' failed");
+                }
+                return ServiceStatus.failure(name, CheckOutcome.DEPENDENCY_FAILED,
+                        "Dependency '" + dependency + "' failed with status '" + dependencyStatus.getServiceStatus() + "'");
+            }
+        }
+
+        try {
+            return this.checkService(name);
+        } catch (HealthCheckException e) {
+            LOG.warn("Exception while checking status for service '" + name + " ': " + e.getMessage(), e);
+            return ServiceStatus.failure(name, CheckOutcome.ERROR, "Exception: " + e.getMessage());
+        }
+    }
+
+    private static boolean isFailed(ServiceStatus status) {
+        return !status.getOutcome().isHealthy();
+    }
+
+    /**
+     * Checks a single service on request of a client (/status), written to a running flight recording as a
+     * StatusRequest event. Checks of multiple services use {@link #checkService(String)} directly.
+     *
+     * @param serviceName The name of the service to check.
+     * @return The status of the service.
+     */
+    public ServiceStatus requestStatus(String serviceName) {
+        JfrEvent jfrEvent = JfrEvents.STATUS_REQUEST.begin();
+        String outcome = "exception";
+        try {
+            ServiceStatus status = this.checkService(serviceName);
+            outcome = status.getServiceStatus();
+            return status;
+        } finally {
+            if (jfrEvent != null) {
+                jfrEvent.commit(serviceName, outcome);
+            }
+        }
+    }
+
+    public ServiceStatus checkService(String serviceName) {
+
+        if (this.isServiceDisabled(serviceName)) {
+            return ServiceStatus.disabled(serviceName);
+        }
+
+        ServiceConnection checker = this.getServiceConnection(serviceName);
+        ServiceStatus serviceStatus = checker.checkStatus();
+
+        return serviceStatus;
+    }
+
+    /**
+     * Checks if a service is disabled. A service is disabled if a file with the same name as the service name exists
+     * in the 'disable services location' which is set by a property 'config.disable.services.location' in the
+     * application.properties file.
+     * <p>
+     * Note that no check is done if the service actually exists in the configuration, if a file with the service name
+     * exists a status of 'disabled' is returned (for performance reasons).
+     *
+     * @param serviceName The name of the service to check.
+     * @return True if the service is disabled.
+     */
+    private boolean isServiceDisabled(String serviceName) {
+        File disableServicesLocation = config.getDisableServicesLocation();
+
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Checking if service '" + serviceName + "' is disabled; check location: '" + disableServicesLocation + "'");
+        }
+
+        if (disableServicesLocation != null && disableServicesLocation.isDirectory()) {
+            File disabledFile = new File(config.getDisableServicesLocation(), serviceName);
+            if (disabledFile.exists()) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Service '" + serviceName + "' is disabled by file: '" + disabledFile.getAbsolutePath() + "'");
+                }
+                return true;
+            } else if (LOG.isTraceEnabled()) {
+                LOG.trace("File: '" + disabledFile.getAbsolutePath() + "' does not exist, service is not disabbled.");
+
+            }
+        }
+
+        return false;
+    }
+
+    private ServiceConnection getServiceConnection(String serviceName) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Looking up connection to service: " + serviceName);
+        }
+
+        synchronized (this.connectionsLock) {
+            ServiceConnection conn = this.connections.get(serviceName);
+            if (conn == null) {
+                if (LOG.isInfoEnabled()) {
+                    LOG.info("Creating new connection for service: " + serviceName);
+                }
+
+                ServiceConfig serviceConfig = this.config.getServiceInfo(serviceName);
+                conn = new ServiceConnection(serviceConfig, this.createProbeBudget(serviceConfig), this.transport,
+                        this.hedgingPolicy, this.eventLog, this.tracer);
+                this.connections.put(serviceName, conn);
+                this.management.register(ManagementRegistry.getConnectionName(serviceName),
+                        new ServiceConnectionManagement(conn));
+            }
+
+            return conn;
+        }
+
+    }
+
+    /**
+     * Creates the probe budget for a service. The per service rate and burst can be overridden in the services
+     * configuration, the global bucket is shared by all connections (until the configuration is reloaded).
+     * <p>
+     * Must be called while holding the connections lock.
+     */
+    private ProbeBudget createProbeBudget(ServiceConfig serviceConfig) {
+        if (this.globalProbeBucket == null) {
+            this.globalProbeBucket = new TokenBucket(this.config.getGlobalProbeRate(), this.config.getProbeBurst());
+        }
+
+        double rate = this.config.getServiceProbeRate();
+        if (serviceConfig.getProbeRate() != null) {
+            rate = serviceConfig.getProbeRate();
+        }
+
+        int burst = this.config.getProbeBurst();
+        if (serviceConfig.getProbeBurst() != null) {
+            burst = serviceConfig.getProbeBurst();
+        }
+
+        return new ProbeBudget(new TokenBucket(rate, burst), this.globalProbeBucket);
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck;
+
+/**
+ * Deterministic jitter: maps a key (e.g. a service name) to a well distributed fraction, so every service gets its
+ * own, but stable, position within an interval.
+ */
+public class Jitter {
+
+    private Jitter() {
+    }
+
+    /**
+     * @param key The key to calculate the fraction for.
+     * @return A value between 0 (inclusive) and 1 (exclusive) that is always the same for the same key.
+     */
+    public static double fraction(String key) {
+        // String.hashCode() is poorly distributed for similar names, so mix the bits (MurmurHash3 finalizer)
+        long hash = key.hashCode();
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+
+}
@@ -37,6 +37,8 @@ public class OAuthToken {
 
     private long expireTime;
 
+    private long refreshTime;
+
     public String getAccessToken() {
         return accessToken;
     }
@@ -61,6 +63,26 @@ public class OAuthToken {
         this.expireTime = expireTime;
     }
 
+    public long getExpireTime() {
+        return this.expireTime;
+    }
+
+    /**
+     * Sets the time at which the token should be refreshed, before it is actually expired. Spreading the refresh
+     * times prevents all services from requesting a new token from the token service at the same moment.
+     */
+    public void setRefreshTime(long refreshTime) {
+        this.refreshTime = refreshTime;
+    }
+
+    public long getRefreshTime() {
+        return this.refreshTime;
+    }
+
+    public boolean isRefreshDue() {
+        return this.isExpired() || System.currentTimeMillis() > this.refreshTime;
+    }
+
     public boolean isExpired() {
         if (System.currentTimeMillis() > this.expireTime) {
             return true;
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck;
+
+/**
+ * The probe budget of a single service: a probe is only allowed if both the bucket of the service and the global
+ * bucket (shared by all services) have a token available.
+ */
+public class ProbeBudget {
+
+    private final TokenBucket serviceBucket;
+    private final TokenBucket globalBucket;
+
+    public ProbeBudget(TokenBucket serviceBucket, TokenBucket globalBucket) {
+        this.serviceBucket = serviceBucket;
+        this.globalBucket = globalBucket;
+    }
+
+    public boolean tryAcquire() {
+        if (!this.serviceBucket.tryAcquire()) {
+            return false;
+        }
+
+        if (!this.globalBucket.tryAcquire()) {
+            this.serviceBucket.release();
+            return false;
+        }
+
+        return true;
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck;
+
+/**
+ * The probe schedule of a single service.
+ */
+public class ProbeScheduleEntry {
+
+    private String serviceName;
+    private long interval;
+    private long phase;
+    private Long nextProbe;
+    private Long tokenRefresh;
+
+    public ProbeScheduleEntry(String serviceName, long interval, long phase, Long nextProbe, Long tokenRefresh) {
+        this.serviceName = serviceName;
+        this.interval = interval;
+        this.phase = phase;
+        this.nextProbe = nextProbe;
+        this.tokenRefresh = tokenRefresh;
+    }
+
+    public String getServiceName() {
+        return this.serviceName;
+    }
+
+    /**
+     * @return The interval in milliseconds between probes, 0 if the service is not probed on a schedule.
+     */
+    public long getInterval() {
+        return this.interval;
+    }
+
+    /**
+     * @return The offset in milliseconds within the interval at which the service is probed.
+     */
+    public long getPhase() {
+        return this.phase;
+    }
+
+    /**
+     * @return The time (in milliseconds since the epoch) of the next scheduled probe, or null if there is none.
+     */
+    public Long getNextProbe() {
+        return this.nextProbe;
+    }
+
+    /**
+     * @return The time (in milliseconds since the epoch) at which the token will be refreshed, or null if the service
+     * has no token yet.
+     */
+    public Long getTokenRefresh() {
+        return this.tokenRefresh;
+    }
+
+}
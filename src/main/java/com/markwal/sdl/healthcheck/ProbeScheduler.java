@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Probes services in the background, each service with its own interval.
+ * <p>
+ * Every service gets a fixed phase within its interval (derived from the service name) and probes are aligned to the
+ * wall clock, so the probes of services with the same interval are spread evenly over the interval instead of all
+ * firing at the same moment. Because the phase is deterministic, the schedule is the same after a restart or reload.
+ */
+public class ProbeScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProbeScheduler.class);
+
+    private final Object scheduleLock = new Object();
+    private final HealthCheckEngine engine;
+    private final ScheduledExecutorService executor;
+    private Map<String, ScheduledProbe> probes = new HashMap<String, ScheduledProbe>();
+
+    public ProbeScheduler(HealthCheckEngine engine, int threads) {
+        this.engine = engine;
+        this.executor = Executors.newScheduledThreadPool(Math.max(1, threads), new NamedThreadFactory("probe-scheduler"));
+    }
+
+    /**
+     * Schedules the probes for a service, replacing an existing schedule for the service.
+     *
+     * @param serviceName The name of the service.
+     * @param interval    The interval in milliseconds, 0 (or less) removes the schedule for the service.
+     */
+    public void schedule(final String serviceName, long interval) {
+        synchronized (this.scheduleLock) {
+            this.cancel(serviceName);
+
+            if (interval <= 0) {
+                return;
+            }
+
+            long phase = (long) (Jitter.fraction(serviceName) * interval);
+            long initialDelay = Math.floorMod(phase - System.currentTimeMillis(), interval);
+
+            if (LOG.isInfoEnabled()) {
+                LOG.info("Scheduling probes for service '" + serviceName + "' every " + interval + " ms at phase " + phase + " ms");
+            }
+
+            ScheduledFuture<?> future = this.executor.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    probe(serviceName);
+                }
+            }, initialDelay, interval, TimeUnit.MILLISECONDS);
+
+            this.probes.put(serviceName, new ScheduledProbe(interval, phase, future));
+        }
+    }
+
+    public void cancelAll() {
+        synchronized (this.scheduleLock) {
+            for (ScheduledProbe probe : this.probes.values()) {
+                probe.future.cancel(false);
+            }
+            this.probes.clear();
+        }
+    }
+
+    public void shutdown() {
+        this.cancelAll();
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * @param serviceName The name of the service.
+     * @return The schedule of the service (the token refresh time is not set), or null if it is not scheduled.
+     */
+    public ProbeScheduleEntry getSchedule(String serviceName) {
+        synchronized (this.scheduleLock) {
+            ScheduledProbe probe = this.probes.get(serviceName);
+            if (probe == null) {
+                return null;
+            }
+
+            long nextProbe = System.currentTimeMillis() + probe.future.getDelay(TimeUnit.MILLISECONDS);
+            return new ProbeScheduleEntry(serviceName, probe.interval, probe.phase, nextProbe, null);
+        }
+    }
+
+    private void cancel(String serviceName) {
+        ScheduledProbe existing = this.probes.remove(serviceName);
+        if (existing != null) {
+            existing.future.cancel(false);
+        }
+    }
+
+    private void probe(String serviceName) {
+        // exceptions must not escape, that would cancel all following probes of the service
+        try {
+            ServiceStatus status = this.engine.checkService(serviceName);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Scheduled probe of service '" + serviceName + "': " + status.getServiceStatus());
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Exception during scheduled probe of service '" + serviceName + "': " + e.getMessage(), e);
+        }
+    }
+
+    private static class ScheduledProbe {
+        private final long interval;
+        private final long phase;
+        private final ScheduledFuture<?> future;
+
+        private ScheduledProbe(long interval, long phase, ScheduledFuture<?> future) {
+            this.interval = interval;
+            this.phase = phase;
+            this.future = future;
+        }
+    }
+
+}
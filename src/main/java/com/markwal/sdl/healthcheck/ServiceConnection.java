@@ -19,18 +19,29 @@ package com.markwal.sdl.healthcheck;
 import com.google.gson.Gson;
 import com.markwal.sdl.healthcheck.config.EnvVarSubstitutor;
 import com.markwal.sdl.healthcheck.config.ServiceConfig;
+import com.markwal.sdl.healthcheck.event.CheckEvent;
+import com.markwal.sdl.healthcheck.event.CheckEventLog;
+import com.markwal.sdl.healthcheck.event.CheckPhase;
+import com.markwal.sdl.healthcheck.event.CheckStatistics;
+import com.markwal.sdl.healthcheck.jfr.JfrEvent;
+import com.markwal.sdl.healthcheck.jfr.JfrEvents;
+import com.markwal.sdl.healthcheck.trace.CheckTracer;
+import com.markwal.sdl.healthcheck.transport.HedgedResponse;
+import com.markwal.sdl.healthcheck.transport.HedgingPolicy;
+import com.markwal.sdl.healthcheck.transport.LatencyTracker;
+import com.markwal.sdl.healthcheck.transport.ProbeTransport;
+import com.markwal.sdl.healthcheck.transport.RequestFactory;
+import com.markwal.sdl.healthcheck.validation.ResponseValidator;
 import com.tridion.crypto.Crypto;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.conn.HttpHostConnectException;
 import org.apache.http.entity.ByteArrayEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,72 +59,235 @@ public class ServiceConnection {
     private final Object checkerLock = new Object();
     private final EnvVarSubstitutor envVarSubstitutor = new EnvVarSubstitutor();
     private ServiceConfig serviceConfig;
-    private OAuthToken token;
-
-    public ServiceConnection(ServiceConfig serviceConfig) {
+    private ProbeBudget probeBudget;
+    private ProbeTransport transport;
+    private HedgingPolicy hedgingPolicy;
+    private final LatencyTracker latencyTracker = new LatencyTracker(100);
+    private CheckEventLog eventLog;
+    private CheckTracer tracer;
+    private final CheckStatistics statistics = new CheckStatistics();
+    private ResponseValidator responseValidator;
+    private double tokenRefreshFraction;
+    private volatile OAuthToken token;
+    private volatile ServiceStatus lastStatus;
+
+    public ServiceConnection(ServiceConfig serviceConfig, ProbeBudget probeBudget, ProbeTransport transport,
+                             HedgingPolicy hedgingPolicy, CheckEventLog eventLog, CheckTracer tracer) {
         this.serviceConfig = serviceConfig;
+        this.probeBudget = probeBudget;
+        this.transport = transport;
+        this.hedgingPolicy = hedgingPolicy;
+        this.eventLog = eventLog;
+        this.tracer = tracer;
+        this.responseValidator = new ResponseValidator(serviceConfig.getAssertions());
+        this.tokenRefreshFraction = 0.5 + 0.4 * Jitter.fraction("token:" + serviceConfig.getName());
+    }
+
+    public String getServiceName() {
+        return this.serviceConfig.getName();
+    }
+
+    /**
+     * @return The result of the most recent executed check, or null if the service was not checked yet.
+     */
+    public ServiceStatus getLastStatus() {
+        return this.lastStatus;
+    }
+
+    /**
+     * @return The probe budget of the service, also used by the TCP level checks.
+     */
+    public ProbeBudget getProbeBudget() {
+        return this.probeBudget;
+    }
+
+    public CheckStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * @return The given percentile of the check request latency in milliseconds, -1 if there are not enough samples.
+     */
+    public long getLatencyPercentile(double percentile) {
+        return this.latencyTracker.getPercentile(percentile);
+    }
+
+    /**
+     * @return The time at which the current token expires, or null if there is no token.
+     */
+    public Long getTokenExpireTime() {
+        OAuthToken current = this.token;
+        if (current == null) {
+            return null;
+        }
+        return current.getExpireTime();
+    }
+
+    /**
+     * @return The time at which the current token will be refreshed, or null if there is no token.
+     */
+    public Long getTokenRefreshTime() {
+        OAuthToken current = this.token;
+        if (current == null) {
+            return null;
+        }
+        return current.getRefreshTime();
     }
 
+    /**
+     * Checks the status of the service. If the probe budget of the service is exhausted the most recent result is
+     * returned (with its age) instead of sending a new request to the service, including the failure of a check that
+     * threw an exception. Without a previous result an 'error-budget' status is returned.
+     * <p>
+     * Every check is written to the check event log, including the timings of the separate phases of the check.
+     * Sampled checks are traced, the traces of slow checks are kept by the tracer. While a flight recording is running
+     * the check is also written to the recording as a ServiceCheck event.
+     *
+     * @return The status of the service.
+     */
     public ServiceStatus checkStatus() {
+        JfrEvent jfrEvent = JfrEvents.SERVICE_CHECK.begin();
+        CheckEvent event = new CheckEvent(this.serviceConfig.getName(),
+                this.tracer.startTrace(this.serviceConfig.getName()));
+
+        try {
+            ServiceStatus status = this.checkStatus(event);
+            if (!event.isCached() && !status.isOk()) {
+                event.setMessage(status.getStatusMessage());
+            }
+            event.complete(status.getServiceStatus());
+            return status;
+        } catch (RuntimeException e) {
+            event.setMessage(e.getClass().getSimpleName() + ": " + e.getMessage());
+            event.complete("exception");
+            throw e;
+        } finally {
+            this.statistics.record(event);
+            this.tracer.complete(event.getTrace(), event);
+            this.eventLog.log(event);
+            if (jfrEvent != null) {
+                jfrEvent.commit(this.serviceConfig.getName(), event.getOutcome());
+            }
+        }
+    }
+
+    private ServiceStatus checkStatus(CheckEvent event) {
+        if (!this.probeBudget.tryAcquire()) {
+            ServiceStatus previous = this.lastStatus;
+            if (previous != null) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Probe budget exhausted for service '" + serviceConfig.getName() + "', returning previous result");
+                }
+                event.setCached(true);
+                return previous.asCached();
+            }
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Probe budget exhausted for service '" + serviceConfig.getName() + "' and no previous result available");
+            }
+            return ServiceStatus.budgetExhausted(this.serviceConfig.getName());
+        }
+
         ServiceStatus status;
 
-        if (LOG.isInfoEnabled()) {
-            LOG.info("Checking status for service '" + serviceConfig.getName() + "'");
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Checking status for service '" + serviceConfig.getName() + "'");
         }
 
+        long mark = System.nanoTime();
         synchronized (checkerLock) {
-            this.checkToken();
+            mark = event.endPhase(CheckPhase.LOCK_WAIT, mark);
+            try {
+                status = this.probe(event, mark);
+            } catch (RuntimeException e) {
+                // keep the failure as the previous result, so the probe budget also limits probes of a throwing service
+                this.lastStatus = ServiceStatus.failure(this.serviceConfig.getName(), CheckOutcome.ERROR,
+                        e.getClass().getSimpleName() + ": " + e.getMessage());
+                throw e;
+            }
+        }
 
-            try (CloseableHttpClient client = this.createClient()) {
+        this.lastStatus = status;
+        return status;
+    }
+
+    /**
+     * Executes the check request (requesting a token first if needed), must be called while holding the checker lock.
+     */
+    private ServiceStatus probe(CheckEvent event, long mark) {
+        ServiceStatus status;
 
-                HttpResponse response = this.executeCheckRequest(client);
+        this.checkToken();
+        mark = event.endPhase(CheckPhase.TOKEN, mark);
+
+        CloseableHttpResponse response = null;
+        try {
+            long requestStart = System.currentTimeMillis();
+            response = this.executeCheckRequest(event);
+            mark = event.endPhase(CheckPhase.REQUEST, mark);
+
+            if (response.getStatusLine().getStatusCode() == 401) {
                 String responseString = this.readResponse(response);
                 if (LOG.isTraceEnabled()) {
                     LOG.trace("Response: " + responseString);
                 }
-
-                if (response.getStatusLine().getStatusCode() == 401) {
-                    if (LOG.isInfoEnabled()) {
-                        LOG.info("Received 401 error, refreshing token and trying again");
-                    }
-                    // authentication issue, request new token and try again
-                    this.token = null;
-                    this.requestToken();
-                    response = this.executeCheckRequest(client);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Received 401 error, refreshing token and trying again");
                 }
+                this.transport.release(response);
+                response = null;
+                // authentication issue, request new token and try again
+                this.token = null;
+                this.requestToken();
+                requestStart = System.currentTimeMillis();
+                response = this.executeCheckRequest(event);
+                mark = event.endPhase(CheckPhase.REAUTH, mark);
+            }
+            long responseTime = System.currentTimeMillis() - requestStart;
 
-                if (LOG.isInfoEnabled()) {
-                    LOG.info("Received status code: " + response.getStatusLine().getStatusCode());
-                    LOG.info("Received status message: " + response.getStatusLine().getReasonPhrase());
-                }
+            int statusCode = response.getStatusLine().getStatusCode();
+            event.setHttpCode(statusCode);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Received status: " + statusCode + " " + response.getStatusLine().getReasonPhrase());
+            }
 
-                if (response.getStatusLine().getStatusCode() == 200) {
-                    status = new ServiceStatus(this.serviceConfig.getName(),
-                            "ok", "ok");
+            if (statusCode == 200) {
+                // only reads as much of the body as the assertions need (nothing if there are none)
+                String failure = this.responseValidator.validate(response.getEntity(), responseTime);
+                if (failure == null) {
+                    status = ServiceStatus.ok(this.serviceConfig.getName());
                 } else {
-                    LOG.warn("Received error status code: " + response.getStatusLine().getStatusCode());
-                    LOG.warn("Received error status message: " + response.getStatusLine().getReasonPhrase());
-
-                    status = new ServiceStatus(
-                            this.serviceConfig.getName(),
-                            "error-" + response.getStatusLine().getStatusCode(),
-                            responseString);
+                    status = ServiceStatus.failure(this.serviceConfig.getName(), CheckOutcome.ASSERTION_FAILED,
+                            statusCode, failure);
                 }
-            } catch (HttpHostConnectException e) {
-                LOG.warn("Connect exception: " + e.getMessage(), e);
-                status = new ServiceStatus(this.serviceConfig.getName(), "error-connect", e.getMessage());
-            } catch (IOException e) {
-                throw new HealthCheckException(e);
+            } else {
+                String responseString = this.readResponse(response);
+                if (LOG.isTraceEnabled()) {
+                    LOG.trace("Response: " + responseString);
+                }
+
+                status = ServiceStatus.httpError(this.serviceConfig.getName(), statusCode, responseString);
             }
+            event.endPhase(CheckPhase.BODY, mark);
+        } catch (HttpHostConnectException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Connect exception: " + e.getMessage(), e);
+            }
+            status = ServiceStatus.failure(this.serviceConfig.getName(), CheckOutcome.CONNECT_ERROR,
+                    e.getMessage());
+        } catch (IOException e) {
+            throw new HealthCheckException(e);
+        } finally {
+            this.transport.release(response);
         }
 
         return status;
     }
 
-    private HttpResponse executeCheckRequest(HttpClient client)
+    private CloseableHttpResponse executeCheckRequest(CheckEvent event)
             throws IOException {
 
-        String url = envVarSubstitutor.replace(this.serviceConfig.getProtocol()) + "://"
+        final String url = envVarSubstitutor.replace(this.serviceConfig.getProtocol()) + "://"
                 + envVarSubstitutor.replace(this.serviceConfig.getHost()) + ":"
                 + envVarSubstitutor.replace(this.serviceConfig.getPort()) + "/"
                 + envVarSubstitutor.replace(this.serviceConfig.getUri());
@@ -122,46 +296,39 @@ public class ServiceConnection {
             LOG.trace("Check URL: " + url);
         }
 
-        HttpGet request = new HttpGet(url);
-        request.setConfig(this.createRequestConfig());
-        request.addHeader("authorization",
-                "Bearer " + this.token.getAccessToken());
+        final String authorization = "Bearer " + this.token.getAccessToken();
+        RequestFactory requestFactory = new RequestFactory() {
+            @Override
+            public HttpUriRequest create() {
+                HttpGet request = new HttpGet(url);
+                request.setConfig(transport.getRequestConfig());
+                request.addHeader("authorization", authorization);
+                return request;
+            }
+        };
 
-        if (LOG.isInfoEnabled()) {
-            LOG.info("Executing check request: " + url);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Executing check request: " + url);
         }
 
-        HttpResponse response = client.execute(request);
+        HedgedResponse response = this.hedgingPolicy.execute(this.transport, requestFactory, this.latencyTracker,
+                this.hedgingPolicy.isEnabled(this.serviceConfig.getHedge()), event);
+        if (response.isHedged()) {
+            event.setHedged(true);
+        }
 
-        return response;
+        return response.getResponse();
     }
 
     private void checkToken() {
-        if ((this.token == null) || (token.isExpired())) {
+        if ((this.token == null) || (token.isRefreshDue())) {
             if (LOG.isInfoEnabled()) {
-                LOG.info("No token or token is expired, requesting new token");
+                LOG.info("No token or token is due for refresh, requesting new token");
             }
             this.requestToken();
         }
     }
 
-    private RequestConfig createRequestConfig() {
-        RequestConfig config = RequestConfig.custom()
-                .setConnectionRequestTimeout(1000).setConnectTimeout(1000)
-                .setSocketTimeout(1000).build();
-        return config;
-    }
-
-    private CloseableHttpClient createClient() {
-        HttpClientBuilder builder = HttpClientBuilder.create();
-
-        // Use system properties if specified (e.g. for proxy)
-        builder.useSystemProperties();
-        CloseableHttpClient client = builder.build();
-
-        return client;
-    }
-
     private void requestToken() {
         String tokenUrl = envVarSubstitutor.replace(this.serviceConfig.getTokenUrl());
 
@@ -179,12 +346,14 @@ public class ServiceConnection {
                 + envVarSubstitutor.replace(this.serviceConfig.getClientId()) + "&client_secret="
                 + this.decryptIfNeeded(envVarSubstitutor.replace(this.serviceConfig.getClientSecret()));
 
-        HttpResponse response;
-        try (CloseableHttpClient client = this.createClient()) {
+        JfrEvent jfrEvent = JfrEvents.TOKEN_REQUEST.begin();
+        String outcome = "exception";
+        CloseableHttpResponse response = null;
+        try {
             HttpEntity entity = new ByteArrayEntity(requestBody.getBytes("UTF-8"));
             tokenRequest.setEntity(entity);
 
-            response = client.execute(tokenRequest);
+            response = this.transport.execute(tokenRequest);
             if (LOG.isInfoEnabled()) {
                 LOG.info("Received status code: " + response.getStatusLine().getStatusCode());
                 LOG.info("Received status message: " + response.getStatusLine().getReasonPhrase());
@@ -194,9 +363,11 @@ public class ServiceConnection {
             if (this.isErrorResponse(responseString)) {
                 LOG.warn("Received error from Token service: " + responseString);
                 this.token = null;
+                outcome = "error-token";
                 throw new TokenException(this.getTokenError(responseString));
             } else {
                 this.token = this.parseResponseToken(responseString);
+                outcome = "ok";
                 if (LOG.isInfoEnabled()) {
                     LOG.info("Successfully retrieved a token");
                 }
@@ -204,6 +375,11 @@ public class ServiceConnection {
         } catch (IOException e) {
             LOG.warn("IOException while retrieving token: " + e.getMessage());
             throw new HealthCheckException(e);
+        } finally {
+            this.transport.release(response);
+            if (jfrEvent != null) {
+                jfrEvent.commit(this.serviceConfig.getName(), outcome);
+            }
         }
 
 
@@ -227,8 +403,10 @@ public class ServiceConnection {
         OAuthToken tokenResponse = gson.fromJson(responseString,
                 OAuthToken.class);
         // subtract 500 ms to allow for duration of request.
-        tokenResponse.setExpireTime(System.currentTimeMillis()
-                + tokenResponse.getExpiresIn() - 500);
+        long now = System.currentTimeMillis();
+        tokenResponse.setExpireTime(now + tokenResponse.getExpiresIn() - 500);
+        // refresh somewhere between 50% and 90% of the lifetime, at a fixed point per service
+        tokenResponse.setRefreshTime(now + (long) (tokenResponse.getExpiresIn() * this.tokenRefreshFraction));
         return tokenResponse;
     }
 
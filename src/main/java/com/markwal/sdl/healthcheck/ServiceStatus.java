@@ -16,16 +16,111 @@
 
 package com.markwal.sdl.healthcheck;
 
-public class ServiceStatus {
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
-    private String serviceName;
-    private String serviceStatus;
-    private String statusMessage;
+/**
+ * Immutable result of a service check: the outcome, the HTTP status code (0 if no response was received), a message
+ * and the time of the check. Only the serviceName, serviceStatus, statusMessage and age are part of the JSON.
+ * <p>
+ * The status strings and the messages of the common outcomes are shared constants. Error messages contain upstream
+ * text (often with request ids or timestamps) so they are not interned, they are capped at
+ * {@link #MAX_MESSAGE_LENGTH} characters.
+ */
+public final class ServiceStatus {
+
+    public static final int MAX_MESSAGE_LENGTH = 512;
+
+    private static final String OK_MESSAGE = "ok";
+    private static final String DISABLED_MESSAGE = "Disabled by status file";
+    private static final String BUDGET_EXHAUSTED_MESSAGE = "Probe budget exhausted and no previous result available";
 
-    public ServiceStatus(String serviceName, String serviceStatus, String statusMessage) {
+    private final String serviceName;
+    private final CheckOutcome outcome;
+    private final int code;
+    private final String statusMessage;
+    private final long checkTime;
+    private final Long age;
+    private final Double connectTime;
+
+    private ServiceStatus(String serviceName, CheckOutcome outcome, int code, String statusMessage, long checkTime,
+                          Long age, Double connectTime) {
         this.serviceName = serviceName;
-        this.serviceStatus = serviceStatus;
+        this.outcome = outcome;
+        this.code = code;
         this.statusMessage = statusMessage;
+        this.checkTime = checkTime;
+        this.age = age;
+        this.connectTime = connectTime;
+    }
+
+    public static ServiceStatus ok(String serviceName) {
+        return new ServiceStatus(serviceName, CheckOutcome.OK, 200, OK_MESSAGE, System.currentTimeMillis(), null,
+                null);
+    }
+
+    /**
+     * @param connectNanos The time it took to establish a TCP connection to the service.
+     * @return The status of a service that accepted a connection (TCP level check).
+     */
+    public static ServiceStatus reachable(String serviceName, long connectNanos) {
+        double connectMillis = Math.round(connectNanos / 10000.0) / 100.0;
+        return new ServiceStatus(serviceName, CheckOutcome.OK, 0, OK_MESSAGE, System.currentTimeMillis(), null,
+                connectMillis);
+    }
+
+    public static ServiceStatus disabled(String serviceName) {
+        return new ServiceStatus(serviceName, CheckOutcome.DISABLED, 0, DISABLED_MESSAGE, System.currentTimeMillis(),
+                null, null);
+    }
+
+    /**
+     * @return The status of a service that was not checked because its probe budget is exhausted and there is no
+     * previous result to return.
+     */
+    public static ServiceStatus budgetExhausted(String serviceName) {
+        return new ServiceStatus(serviceName, CheckOutcome.BUDGET_EXHAUSTED, 0, BUDGET_EXHAUSTED_MESSAGE,
+                System.currentTimeMillis(), null, null);
+    }
+
+    public static ServiceStatus httpError(String serviceName, int code, String message) {
+        return failure(serviceName, CheckOutcome.HTTP_ERROR, code, message);
+    }
+
+    public static ServiceStatus failure(String serviceName, CheckOutcome outcome, String message) {
+        return failure(serviceName, outcome, 0, message);
+    }
+
+    public static ServiceStatus failure(String serviceName, CheckOutcome outcome, int code, String message) {
+        return new ServiceStatus(serviceName, outcome, code, compactMessage(message), System.currentTimeMillis(),
+                null, null);
+    }
+
+    private static String compactMessage(String message) {
+        if (message == null) {
+            return null;
+        }
+        if (message.length() > MAX_MESSAGE_LENGTH) {
+            int end = MAX_MESSAGE_LENGTH - 3;
+            // don't split a surrogate pair
+            if (Character.isHighSurrogate(message.charAt(end - 1))) {
+                end--;
+            }
+            message = message.substring(0, end) + "...";
+        }
+        return message;
+    }
+
+    /**
+     * Returns a copy of this status that reports how old the result is, used when a previous result is served
+     * instead of executing a new check.
+     *
+     * @return A copy of this status with the age set.
+     */
+    public ServiceStatus asCached() {
+        long currentAge = Math.max(0, System.currentTimeMillis() - this.checkTime);
+        return new ServiceStatus(this.serviceName, this.outcome, this.code, this.statusMessage, this.checkTime,
+                currentAge, this.connectTime);
     }
 
     public String getServiceName() {
@@ -33,11 +128,50 @@ public class ServiceStatus {
     }
 
     public String getServiceStatus() {
-        return this.serviceStatus;
+        return this.outcome.getStatus(this.code);
     }
 
     public String getStatusMessage() {
         return this.statusMessage;
     }
 
+    @JsonIgnore
+    public CheckOutcome getOutcome() {
+        return this.outcome;
+    }
+
+    /**
+     * @return The HTTP status code of the checked response, 0 if the check did not receive a response.
+     */
+    @JsonIgnore
+    public int getCode() {
+        return this.code;
+    }
+
+    @JsonIgnore
+    public boolean isOk() {
+        return this.outcome == CheckOutcome.OK;
+    }
+
+    @JsonIgnore
+    public long getCheckTime() {
+        return this.checkTime;
+    }
+
+    /**
+     * @return The age in milliseconds of a cached result, or null if the check was executed for this request.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Long getAge() {
+        return this.age;
+    }
+
+    /**
+     * @return The time in milliseconds it took to connect to the service, only set by a TCP level check.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Double getConnectTime() {
+        return this.connectTime;
+    }
+
 }
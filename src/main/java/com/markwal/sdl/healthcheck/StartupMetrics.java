@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Reports the startup time and memory use of the application, logged by both launchers so the Spring and the lite
+ * mode can be compared.
+ */
+public final class StartupMetrics {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StartupMetrics.class);
+    private static final File PROC_STATUS = new File("/proc/self/status");
+
+    private StartupMetrics() {
+    }
+
+    public static void log(String mode) {
+        if (!LOG.isInfoEnabled()) {
+            return;
+        }
+
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+        long rss = readResidentSetSize();
+
+        LOG.info("Started ServiceHealthCheck (" + mode + " mode) in " + uptime + " ms, heap used "
+                + toMegabytes(heap.getUsed()) + " MB (committed " + toMegabytes(heap.getCommitted())
+                + " MB), non-heap used " + toMegabytes(nonHeap.getUsed()) + " MB, resident "
+                + (rss < 0 ? "n/a" : toMegabytes(rss) + " MB"));
+    }
+
+    /**
+     * @return The resident set size of the process in bytes, or -1 if it is not available on this platform.
+     */
+    private static long readResidentSetSize() {
+        if (!PROC_STATUS.canRead()) {
+            return -1;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(PROC_STATUS))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("VmRSS:")) {
+                    String value = line.substring("VmRSS:".length()).trim();
+                    int space = value.indexOf(' ');
+                    return Long.parseLong(space < 0 ? value : value.substring(0, space)) * 1024L;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+        return -1;
+    }
+
+    private static long toMegabytes(long bytes) {
+        return bytes / (1024L * 1024L);
+    }
+}
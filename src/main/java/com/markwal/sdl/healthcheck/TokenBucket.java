@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck;
+
+/**
+ * Simple token bucket used to limit the number of probes that are sent to a service.
+ * <p>
+ * The bucket starts full and is refilled continuously at the configured rate. A rate of 0 (or less) means the bucket
+ * is unlimited and every call to {@link #tryAcquire()} succeeds.
+ */
+public class TokenBucket {
+
+    private final Object bucketLock = new Object();
+    private final double ratePerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param ratePerSecond The number of tokens added per second, 0 or less for an unlimited bucket.
+     * @param burst         The maximum number of tokens the bucket can hold.
+     */
+    public TokenBucket(double ratePerSecond, int burst) {
+        this.ratePerNano = ratePerSecond / 1000000000d;
+        this.capacity = Math.max(1, burst);
+        this.tokens = this.capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public boolean isUnlimited() {
+        return this.ratePerNano <= 0;
+    }
+
+    public boolean tryAcquire() {
+        if (this.isUnlimited()) {
+            return true;
+        }
+
+        synchronized (this.bucketLock) {
+            this.refill();
+            if (this.tokens >= 1) {
+                this.tokens -= 1;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Returns a token that was acquired but not used (e.g. because another bucket refused the probe).
+     */
+    public void release() {
+        if (this.isUnlimited()) {
+            return;
+        }
+
+        synchronized (this.bucketLock) {
+            this.tokens = Math.min(this.capacity, this.tokens + 1);
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        this.tokens = Math.min(this.capacity, this.tokens + (now - this.lastRefill) * this.ratePerNano);
+        this.lastRefill = now;
+    }
+
+}
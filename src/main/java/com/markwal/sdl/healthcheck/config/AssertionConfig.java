@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck.config;
+
+/**
+ * A single assertion on the response of a service check, only one of the assertion types should be set:
+ * <ul>
+ * <li>jsonPath: the JSON path must exist in the response, or (if 'equals' is set) have the given value</li>
+ * <li>contains: the response body must contain the given text</li>
+ * <li>maxResponseTime: the response must be received within the given number of milliseconds</li>
+ * </ul>
+ */
+public class AssertionConfig {
+
+    private String jsonPath;
+    private String equals;
+    private String contains;
+    private Long maxResponseTime;
+
+    public String getJsonPath() {
+        return this.jsonPath;
+    }
+
+    public String getEquals() {
+        return this.equals;
+    }
+
+    public String getContains() {
+        return this.contains;
+    }
+
+    public Long getMaxResponseTime() {
+        return this.maxResponseTime;
+    }
+
+}
@@ -17,7 +17,9 @@
 package com.markwal.sdl.healthcheck.config;
 
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.markwal.sdl.healthcheck.HealthCheckException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,13 +27,11 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.lang.reflect.Type;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -48,7 +48,105 @@ public class Configuration {
     @Value("${config.disable.services.location}")
     private File disableServicesLocation;
 
+    @Value("${config.probe.rate.global:0}")
+    private double globalProbeRate;
+
+    @Value("${config.probe.rate.service:0}")
+    private double serviceProbeRate;
+
+    @Value("${config.probe.burst:5}")
+    private int probeBurst;
+
+    @Value("${config.probe.interval:0}")
+    private int probeInterval;
+
+    @Value("${config.probe.scheduler.threads:2}")
+    private int probeSchedulerThreads;
+
+    @Value("${config.check.threads:8}")
+    private int checkThreads;
+
+    @Value("${config.check.shard.size:25}")
+    private int checkShardSize;
+
+    @Value("${config.check.timeout.pool:1000}")
+    private int connectionRequestTimeout;
+
+    @Value("${config.check.timeout.connect:1000}")
+    private int connectTimeout;
+
+    @Value("${config.check.timeout.socket:1000}")
+    private int socketTimeout;
+
+    @Value("${config.check.tcp.connects:1024}")
+    private int tcpConnects;
+
+    @Value("${config.transport.connections.host:0}")
+    private int maxConnectionsPerHost;
+
+    @Value("${config.transport.connections.total:100}")
+    private int maxConnections;
+
+    @Value("${config.transport.tls.session.cache:1000}")
+    private int tlsSessionCacheSize;
+
+    @Value("${config.transport.tls.session.timeout:86400}")
+    private int tlsSessionTimeout;
+
+    @Value("${config.dns.ttl:60}")
+    private int dnsTtl;
+
+    @Value("${config.dns.negative.ttl:5}")
+    private int dnsNegativeTtl;
+
+    @Value("${config.hedge.enabled:false}")
+    private boolean hedgeEnabled;
+
+    @Value("${config.hedge.budget:2000}")
+    private long hedgeBudget;
+
+    @Value("${config.hedge.ratio:0.1}")
+    private double hedgeRatio;
+
+    @Value("${config.hedge.min.delay:20}")
+    private long hedgeMinDelay;
+
+    @Value("${config.hedge.min.samples:20}")
+    private int hedgeMinSamples;
+
+    @Value("${config.events.queue.size:1000}")
+    private int eventQueueSize;
+
+    @Value("${config.events.success.sample:1}")
+    private int eventSuccessSampleRate;
+
+    @Value("${config.trace.sample:0.1}")
+    private double traceSampleRate;
+
+    @Value("${config.trace.slow.threshold:1000}")
+    private long traceSlowThreshold;
+
+    @Value("${config.trace.buffer.size:100}")
+    private int traceBufferSize;
+
+    @Value("${config.trace.export.file:}")
+    private File traceExportFile;
+
+    @Value("${config.jfr.enabled:false}")
+    private boolean jfrEnabled;
+
+    @Value("${config.jfr.directory:jfr}")
+    private File jfrDirectory;
+
+    @Value("${config.jfr.max.duration:300}")
+    private int jfrMaxDuration;
+
+    @Value("${config.jfr.max.files:10}")
+    private int jfrMaxFiles;
+
     private Map<String, ServiceConfig> serviceMap;
+    private ServiceDependencyGraph dependencyGraph;
+    private ServiceIndex serviceIndex;
 
     public String getServicesConfig() {
         return this.servicesConfig;
@@ -58,9 +156,211 @@ public class Configuration {
         return this.disableServicesLocation;
     }
 
+    /**
+     * @return The maximum number of probes per second for all services combined, 0 means unlimited.
+     */
+    public double getGlobalProbeRate() {
+        return this.globalProbeRate;
+    }
+
+    /**
+     * @return The default maximum number of probes per second for a single service, 0 means unlimited.
+     */
+    public double getServiceProbeRate() {
+        return this.serviceProbeRate;
+    }
+
+    public int getProbeBurst() {
+        return this.probeBurst;
+    }
+
+    /**
+     * @return The default interval in seconds between scheduled probes, 0 means services are only checked on request.
+     */
+    public int getProbeInterval() {
+        return this.probeInterval;
+    }
+
+    public int getProbeSchedulerThreads() {
+        return this.probeSchedulerThreads;
+    }
+
+    /**
+     * @return The number of threads used to check groups of services in parallel.
+     */
+    public int getCheckThreads() {
+        return this.checkThreads;
+    }
+
+    /**
+     * @return The number of services in a shard, a shard is checked by a single thread.
+     */
+    public int getCheckShardSize() {
+        return this.checkShardSize;
+    }
+
+    /**
+     * @return The time in milliseconds a check waits for a pooled connection.
+     */
+    public int getConnectionRequestTimeout() {
+        return this.connectionRequestTimeout;
+    }
+
+    /**
+     * @return The time in milliseconds a check waits for a new connection to be established.
+     */
+    public int getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    /**
+     * @return The maximum time in milliseconds between two packets of a response.
+     */
+    public int getSocketTimeout() {
+        return this.socketTimeout;
+    }
+
+    /**
+     * @return The maximum number of connects in flight during a TCP level check.
+     */
+    public int getTcpConnects() {
+        return this.tcpConnects;
+    }
+
+    /**
+     * @return The configured maximum number of pooled connections to a single host, 0 to size it from the number of
+     * check threads (see HealthCheckEngine).
+     */
+    public int getMaxConnectionsPerHost() {
+        return this.maxConnectionsPerHost;
+    }
+
+    public int getMaxConnections() {
+        return this.maxConnections;
+    }
+
+    public int getTlsSessionCacheSize() {
+        return this.tlsSessionCacheSize;
+    }
+
+    /**
+     * @return The time in seconds a cached TLS session can be resumed.
+     */
+    public int getTlsSessionTimeout() {
+        return this.tlsSessionTimeout;
+    }
+
+    /**
+     * @return The time in seconds a successful DNS lookup is cached.
+     */
+    public int getDnsTtl() {
+        return this.dnsTtl;
+    }
+
+    /**
+     * @return The time in seconds a failed DNS lookup is cached.
+     */
+    public int getDnsNegativeTtl() {
+        return this.dnsNegativeTtl;
+    }
+
+    /**
+     * @return True if check requests are hedged for services that do not configure hedging.
+     */
+    public boolean isHedgeEnabled() {
+        return this.hedgeEnabled;
+    }
+
+    /**
+     * @return The latency budget in milliseconds of a hedged request.
+     */
+    public long getHedgeBudget() {
+        return this.hedgeBudget;
+    }
+
+    /**
+     * @return The maximum number of hedged requests as a fraction of all check requests.
+     */
+    public double getHedgeRatio() {
+        return this.hedgeRatio;
+    }
+
+    /**
+     * @return The minimum time in milliseconds before a check request is hedged.
+     */
+    public long getHedgeMinDelay() {
+        return this.hedgeMinDelay;
+    }
+
+    /**
+     * @return The number of latency samples a service needs before its check requests are hedged.
+     */
+    public int getHedgeMinSamples() {
+        return this.hedgeMinSamples;
+    }
+
+    public int getEventQueueSize() {
+        return this.eventQueueSize;
+    }
+
+    /**
+     * @return Log one of every n successful checks in the check event log (1 logs all, 0 none), failed checks are
+     * always logged.
+     */
+    public int getEventSuccessSampleRate() {
+        return this.eventSuccessSampleRate;
+    }
+
+    /**
+     * @return The fraction of checks that is traced, 0 disables tracing.
+     */
+    public double getTraceSampleRate() {
+        return this.traceSampleRate;
+    }
+
+    /**
+     * @return The duration in milliseconds from which the trace of a check is kept.
+     */
+    public long getTraceSlowThreshold() {
+        return this.traceSlowThreshold;
+    }
+
+    public int getTraceBufferSize() {
+        return this.traceBufferSize;
+    }
+
+    /**
+     * @return The file the traces of slow checks are appended to, or null if they are only kept in memory.
+     */
+    public File getTraceExportFile() {
+        return this.traceExportFile;
+    }
+
+    public boolean isJfrEnabled() {
+        return this.jfrEnabled;
+    }
+
+    /**
+     * @return The directory flight recordings are written to.
+     */
+    public File getJfrDirectory() {
+        return this.jfrDirectory;
+    }
+
+    /**
+     * @return The maximum duration of a flight recording in seconds.
+     */
+    public int getJfrMaxDuration() {
+        return this.jfrMaxDuration;
+    }
+
+    public int getJfrMaxFiles() {
+        return this.jfrMaxFiles;
+    }
+
     public ServiceConfig getServiceInfo(String serviceName) {
-        if (LOG.isInfoEnabled()) {
-            LOG.info("Retrieving service info for '" + serviceName + "'");
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Retrieving service info for '" + serviceName + "'");
         }
 
         ServiceConfig service = this.getServices().get(serviceName);
@@ -86,6 +386,28 @@ public class Configuration {
 
     }
 
+    public ServiceDependencyGraph getDependencyGraph() {
+        synchronized (serviceMapLock) {
+            if (serviceMap == null) {
+                this.readServices();
+            }
+            return this.dependencyGraph;
+        }
+    }
+
+    public ServiceIndex getServiceIndex() {
+        synchronized (serviceMapLock) {
+            if (serviceMap == null) {
+                this.readServices();
+            }
+            return this.serviceIndex;
+        }
+    }
+
+    /**
+     * Reads the services file. The JSON array is read one element at a time, so only the service configurations (and
+     * not the complete document tree) are kept in memory.
+     */
     private void readServices() {
         File servicesFile = this.findServicesFile();
 
@@ -93,33 +415,41 @@ public class Configuration {
             LOG.info("Reading services from file '" + servicesFile.getAbsolutePath() + "'");
         }
 
-        this.serviceMap = new HashMap<String, ServiceConfig>();
+        Map<String, ServiceConfig> services = new HashMap<String, ServiceConfig>();
 
-        try (InputStreamReader reader = new FileReader(servicesFile)) {
-
-            Type type = new TypeToken<List<ServiceConfig>>() {
-            }.getType();
+        try (JsonReader reader = new JsonReader(new BufferedReader(new FileReader(servicesFile)))) {
 
             Gson gson = new Gson();
-            List<ServiceConfig> serviceList = gson.fromJson(reader, type);
-            for (ServiceConfig serviceConfig : serviceList) {
-                if (serviceConfig == null) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
                     LOG.warn("Service configuration contains an empty array element which is ignored");
-                } else {
-                    if (LOG.isTraceEnabled()) {
-                        LOG.trace("Found service '" + serviceConfig.getName() + "'");
-                    }
+                    continue;
+                }
 
-                    this.serviceMap.put(serviceConfig.getName(), serviceConfig);
+                ServiceConfig serviceConfig = gson.fromJson(reader, ServiceConfig.class);
+                if (LOG.isTraceEnabled()) {
+                    LOG.trace("Found service '" + serviceConfig.getName() + "'");
+                }
+
+                if (services.put(serviceConfig.getName(), serviceConfig) != null) {
+                    LOG.warn("Service '" + serviceConfig.getName() + "' is configured more than once, the last one is used");
                 }
             }
+            reader.endArray();
 
             if (LOG.isInfoEnabled()) {
-                LOG.info("Found " + serviceList.size() + " services");
+                LOG.info("Found " + services.size() + " services");
             }
-        } catch (IOException e) {
-            LOG.warn("IOException while reading services configuration: " + e.getMessage());
-            throw new HealthCheckException(e);
+
+            // only publish the services once the dependencies are valid, otherwise the next request reads them again
+            this.dependencyGraph = new ServiceDependencyGraph(services.values());
+            this.serviceIndex = new ServiceIndex(services.values());
+            this.serviceMap = services;
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            LOG.warn("Exception while reading services configuration: " + e.getMessage());
+            throw new HealthCheckException("Invalid services configuration: " + e.getMessage(), e);
         }
 
     }
@@ -160,6 +490,8 @@ public class Configuration {
     public void resetServicesInfo() {
         synchronized (serviceMapLock) {
             this.serviceMap = null;
+            this.dependencyGraph = null;
+            this.serviceIndex = null;
         }
     }
 
@@ -16,6 +16,8 @@
 
 package com.markwal.sdl.healthcheck.config;
 
+import java.util.List;
+
 public class ServiceConfig {
 
     private String name;
@@ -26,6 +28,14 @@ public class ServiceConfig {
     private String tokenUrl;
     private String clientId;
     private String clientSecret;
+    private Double probeRate;
+    private Integer probeBurst;
+    private List<String> dependsOn;
+    private List<AssertionConfig> assertions;
+    private Integer probeInterval;
+    private List<String> tags;
+    private String environment;
+    private Boolean hedge;
 
     public String getName() {
         return this.name;
@@ -59,4 +69,62 @@ public class ServiceConfig {
         return this.clientSecret;
     }
 
+    /**
+     * @return The maximum number of probes per second for this service, or null to use the configured default.
+     */
+    public Double getProbeRate() {
+        return this.probeRate;
+    }
+
+    /**
+     * @return The number of probes that can be executed in a burst, or null to use the configured default.
+     */
+    public Integer getProbeBurst() {
+        return this.probeBurst;
+    }
+
+    /**
+     * @return The names of the services this service depends on (in addition to the service providing its token
+     * endpoint), or null if there are none.
+     */
+    public List<String> getDependsOn() {
+        return this.dependsOn;
+    }
+
+    /**
+     * @return The assertions that are evaluated on a successful response, or null if there are none.
+     */
+    public List<AssertionConfig> getAssertions() {
+        return this.assertions;
+    }
+
+    /**
+     * @return The interval in seconds between scheduled probes of this service (0 disables scheduled probes), or null
+     * to use the configured default.
+     */
+    public Integer getProbeInterval() {
+        return this.probeInterval;
+    }
+
+    /**
+     * @return The tags of the service (used to check a group of services), or null if there are none.
+     */
+    public List<String> getTags() {
+        return this.tags;
+    }
+
+    /**
+     * @return The environment the service belongs to, or null if not set.
+     */
+    public String getEnvironment() {
+        return this.environment;
+    }
+
+    /**
+     * @return True if check requests of this service are hedged, or null to use the configured default.
+     */
+    public Boolean getHedge() {
+        return this.hedge;
+    }
+
 }
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck.config;
+
+import com.markwal.sdl.healthcheck.HealthCheckException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The dependencies between the configured services.
+ * <p>
+ * A service depends on the services listed in its 'dependsOn' property and implicitly on the service that provides
+ * its token endpoint (the service with the same protocol, host and port as the token URL). The services are grouped
+ * in levels: a service only depends on services in earlier levels, so checking the levels in order guarantees that
+ * the dependencies of a service are checked before the service itself.
+ */
+public class ServiceDependencyGraph {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ServiceDependencyGraph.class);
+
+    private final EnvVarSubstitutor envVarSubstitutor = new EnvVarSubstitutor();
+    private final Map<String, List<String>> dependencies = new HashMap<String, List<String>>();
+    private final Map<String, Integer> levelByService = new HashMap<String, Integer>();
+    private final List<List<String>> levels;
+
+    public ServiceDependencyGraph(Collection<ServiceConfig> services) {
+        Map<String, String> serviceByBaseUrl = new HashMap<String, String>();
+        Set<String> serviceNames = new HashSet<String>();
+        for (ServiceConfig service : services) {
+            serviceByBaseUrl.put(this.getBaseUrl(service), service.getName());
+            serviceNames.add(service.getName());
+        }
+
+        for (ServiceConfig service : services) {
+            Set<String> serviceDependencies = new LinkedHashSet<String>();
+
+            String tokenService = serviceByBaseUrl.get(this.getTokenBaseUrl(service));
+            if (tokenService != null && !tokenService.equals(service.getName())) {
+                serviceDependencies.add(tokenService);
+            }
+
+            if (service.getDependsOn() != null) {
+                for (String dependency : service.getDependsOn()) {
+                    if (!serviceNames.contains(dependency)) {
+                        LOG.warn("Service '" + service.getName() + "' depends on unknown service '" + dependency + "'");
+                        throw new HealthCheckException("Service '" + service.getName() + "' depends on unknown service '" + dependency + "'");
+                    }
+                    serviceDependencies.add(dependency);
+                }
+            }
+
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Dependencies of service '" + service.getName() + "': " + serviceDependencies);
+            }
+
+            this.dependencies.put(service.getName(), Collections.unmodifiableList(new ArrayList<String>(serviceDependencies)));
+        }
+
+        this.levels = Collections.unmodifiableList(this.sortInLevels());
+    }
+
+    /**
+     * @param serviceName The name of the service.
+     * @return The names of the services the service directly depends on (an empty list if there are none).
+     */
+    public List<String> getDependencies(String serviceName) {
+        List<String> result = this.dependencies.get(serviceName);
+        if (result == null) {
+            return Collections.emptyList();
+        }
+        return result;
+    }
+
+    /**
+     * @return The service names grouped in levels, a service only depends on services in earlier levels.
+     */
+    public List<List<String>> getLevels() {
+        return this.levels;
+    }
+
+    /**
+     * @param serviceName The name of the service.
+     * @return The index of the level of the service in {@link #getLevels()}, or -1 for an unknown service.
+     */
+    public int getLevel(String serviceName) {
+        Integer level = this.levelByService.get(serviceName);
+        if (level == null) {
+            return -1;
+        }
+        return level;
+    }
+
+    /**
+     * Topological sort (Kahn's algorithm) that processes the services in rounds, every round is a level.
+     */
+    private List<List<String>> sortInLevels() {
+        Map<String, Integer> unresolved = new HashMap<String, Integer>();
+        Map<String, List<String>> dependents = new HashMap<String, List<String>>();
+        List<String> current = new ArrayList<String>();
+
+        for (Map.Entry<String, List<String>> entry : this.dependencies.entrySet()) {
+            unresolved.put(entry.getKey(), entry.getValue().size());
+            if (entry.getValue().isEmpty()) {
+                current.add(entry.getKey());
+            }
+            for (String dependency : entry.getValue()) {
+                List<String> list = dependents.get(dependency);
+                if (list == null) {
+                    list = new ArrayList<String>();
+                    dependents.put(dependency, list);
+                }
+                list.add(entry.getKey());
+            }
+        }
+
+        List<List<String>> result = new ArrayList<List<String>>();
+        int sorted = 0;
+
+        while (!current.isEmpty()) {
+            // sorted to keep the check order stable between reloads
+            Collections.sort(current);
+            for (String name : current) {
+                this.levelByService.put(name, result.size());
+            }
+            result.add(Collections.unmodifiableList(current));
+            sorted += current.size();
+
+            List<String> next = new ArrayList<String>();
+            for (String name : current) {
+                List<String> list = dependents.get(name);
+                if (list != null) {
+                    for (String dependent : list) {
+                        int remaining = unresolved.get(dependent) - 1;
+                        unresolved.put(dependent, remaining);
+                        if (remaining == 0) {
+                            next.add(dependent);
+                        }
+                    }
+                }
+            }
+            current = next;
+        }
+
+        if (sorted < this.dependencies.size()) {
+            Set<String> remaining = new TreeSet<String>(this.dependencies.keySet());
+            remaining.removeAll(this.levelByService.keySet());
+            LOG.warn("Dependency cycle between services: " + remaining);
+            throw new HealthCheckException("Dependency cycle between services: " + remaining);
+        }
+
+        return result;
+    }
+
+    private String getBaseUrl(ServiceConfig service) {
+        return (envVarSubstitutor.replace(service.getProtocol()) + "://"
+                + envVarSubstitutor.replace(service.getHost()) + ":"
+                + envVarSubstitutor.replace(service.getPort())).toLowerCase();
+    }
+
+    private String getTokenBaseUrl(ServiceConfig service) {
+        String tokenUrl = envVarSubstitutor.replace(service.getTokenUrl());
+        if (tokenUrl == null) {
+            return null;
+        }
+
+        try {
+            URI uri = new URI(tokenUrl);
+            int port = uri.getPort();
+            if (port == -1) {
+                port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+            }
+            return (uri.getScheme() + "://" + uri.getHost() + ":" + port).toLowerCase();
+        } catch (URISyntaxException e) {
+            LOG.warn("Invalid token URL for service '" + service.getName() + "': " + e.getMessage());
+            return null;
+        }
+    }
+
+}
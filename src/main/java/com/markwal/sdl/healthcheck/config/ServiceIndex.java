@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck.config;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indexes of the configured services by tag and by environment, built once when the services are read so a group of
+ * services can be selected without scanning all services.
+ */
+public class ServiceIndex {
+
+    private final Map<String, List<String>> servicesByTag;
+    private final Map<String, List<String>> servicesByEnvironment;
+
+    public ServiceIndex(Collection<ServiceConfig> services) {
+        Map<String, List<String>> byTag = new HashMap<String, List<String>>();
+        Map<String, List<String>> byEnvironment = new HashMap<String, List<String>>();
+
+        for (ServiceConfig service : services) {
+            if (service.getTags() != null) {
+                for (String tag : service.getTags()) {
+                    add(byTag, tag, service.getName());
+                }
+            }
+            if (service.getEnvironment() != null) {
+                add(byEnvironment, service.getEnvironment(), service.getName());
+            }
+        }
+
+        this.servicesByTag = freeze(byTag);
+        this.servicesByEnvironment = freeze(byEnvironment);
+    }
+
+    /**
+     * @param tag The tag.
+     * @return The names of the services with the tag, or null if no service has the tag.
+     */
+    public List<String> getServicesByTag(String tag) {
+        return this.servicesByTag.get(tag);
+    }
+
+    /**
+     * @param environment The environment.
+     * @return The names of the services in the environment, or null if there are no services in the environment.
+     */
+    public List<String> getServicesByEnvironment(String environment) {
+        return this.servicesByEnvironment.get(environment);
+    }
+
+    private static void add(Map<String, List<String>> index, String key, String serviceName) {
+        List<String> names = index.get(key);
+        if (names == null) {
+            names = new ArrayList<String>();
+            index.put(key, names);
+        }
+        if (!names.contains(serviceName)) {
+            names.add(serviceName);
+        }
+    }
+
+    private static Map<String, List<String>> freeze(Map<String, List<String>> index) {
+        Map<String, List<String>> result = new HashMap<String, List<String>>();
+        for (Map.Entry<String, List<String>> entry : index.entrySet()) {
+            result.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+        }
+        return result;
+    }
+
+}
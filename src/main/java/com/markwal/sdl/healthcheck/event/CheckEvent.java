@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck.event;
+
+import com.markwal.sdl.healthcheck.trace.CheckTrace;
+
+/**
+ * The outcome and phase timings of a single service check.
+ * <p>
+ * Phase durations are kept in a primitive array indexed by phase, so recording a phase does not allocate. When the
+ * check is sampled for tracing each phase is also recorded as a span of the trace. The DNS phase is recorded by the
+ * transport while the request is executed (possibly on the thread of a hedged request), it is part of the request
+ * phase.
+ */
+public class CheckEvent {
+
+    private static final CheckPhase[] PHASES = CheckPhase.values();
+
+    private final String serviceName;
+    private final long timestamp;
+    private final long startNanos;
+    private final long[] phaseNanos = new long[PHASES.length];
+    private final CheckTrace trace;
+    private long totalNanos;
+    private String outcome;
+    private int httpCode;
+    private boolean cached;
+    private boolean hedged;
+    private String message;
+
+    public CheckEvent(String serviceName) {
+        this(serviceName, null);
+    }
+
+    /**
+     * @param trace The trace of the check, null if the check is not traced.
+     */
+    public CheckEvent(String serviceName, CheckTrace trace) {
+        this.serviceName = serviceName;
+        this.trace = trace;
+        this.timestamp = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Adds the time since the given start to a phase.
+     *
+     * @param phase The phase.
+     * @param start The start of the phase (as returned by {@link System#nanoTime()}).
+     * @return The end of the phase, which can be used as the start of the next phase.
+     */
+    public long endPhase(CheckPhase phase, long start) {
+        long now = System.nanoTime();
+        this.addPhase(phase, start, now);
+        return now;
+    }
+
+    /**
+     * Adds a phase that ran from start to end, may be called from another thread than the checking thread.
+     *
+     * @param phase The phase.
+     * @param start The start of the phase (as returned by {@link System#nanoTime()}).
+     * @param end   The end of the phase (as returned by {@link System#nanoTime()}).
+     */
+    public void addPhase(CheckPhase phase, long start, long end) {
+        synchronized (this.phaseNanos) {
+            this.phaseNanos[phase.ordinal()] += end - start;
+        }
+        if (this.trace != null) {
+            this.trace.addSpan(phase.getKey(), start, end);
+        }
+    }
+
+    /**
+     * Completes the event, sets the outcome and total duration.
+     */
+    public void complete(String outcome) {
+        this.outcome = outcome;
+        this.totalNanos = System.nanoTime() - this.startNanos;
+    }
+
+    public String getServiceName() {
+        return this.serviceName;
+    }
+
+    /**
+     * @return The trace of the check, null if the check is not traced.
+     */
+    public CheckTrace getTrace() {
+        return this.trace;
+    }
+
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    public long getPhaseNanos(CheckPhase phase) {
+        synchronized (this.phaseNanos) {
+            return this.phaseNanos[phase.ordinal()];
+        }
+    }
+
+    public long getTotalNanos() {
+        return this.totalNanos;
+    }
+
+    public String getOutcome() {
+        return this.outcome;
+    }
+
+    public boolean isSuccess() {
+        return "ok".equals(this.outcome);
+    }
+
+    public int getHttpCode() {
+        return this.httpCode;
+    }
+
+    public void setHttpCode(int httpCode) {
+        this.httpCode = httpCode;
+    }
+
+    /**
+     * @return True if the result of a previous check was returned instead of executing a new check.
+     */
+    public boolean isCached() {
+        return this.cached;
+    }
+
+    public void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    /**
+     * @return True if the response of a hedged (second) request was used.
+     */
+    public boolean isHedged() {
+        return this.hedged;
+    }
+
+    public void setHedged(boolean hedged) {
+        this.hedged = hedged;
+    }
+
+    public String getMessage() {
+        return this.message;
+    }
+
+    /**
+     * Sets the message of a failed check.
+     */
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck.event;
+
+import com.markwal.sdl.healthcheck.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes one structured line per service check to the 'com.markwal.sdl.healthcheck.events' logger (at INFO level),
+ * e.g.:
+ * <pre>
+ * service=content outcome=ok code=200 cached=false hedged=false total_us=10512 lock_us=3 token_us=0 dns_us=21 ...
+ * </pre>
+ * Events are handed to a single background writer through a bounded queue, so checks never wait for logging. When
+ * the queue is full successful checks are dropped (and the number of dropped events is reported on the next line),
+ * failed checks go to a small reserved queue and are only written by the check thread itself when that is full too.
+ * Successful checks can be sampled, failed checks are always logged.
+ */
+public class CheckEventLog {
+
+    public static final String LOGGER_NAME = "com.markwal.sdl.healthcheck.events";
+
+    private static final Logger LOG = LoggerFactory.getLogger(CheckEventLog.class);
+    private static final Logger EVENTS = LoggerFactory.getLogger(LOGGER_NAME);
+    private static final CheckPhase[] PHASES = CheckPhase.values();
+    private static final int MAX_MESSAGE_LENGTH = 200;
+    private static final int MIN_FAILURE_QUEUE_SIZE = 16;
+
+    private final BlockingQueue<CheckEvent> queue;
+    // failures that did not fit in the queue
+    private final BlockingQueue<CheckEvent> failureQueue;
+    private final int successSampleRate;
+    private final AtomicLong successCounter = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // only used by the writer thread
+    private final StringBuilder line = new StringBuilder(256);
+    private Thread writer;
+    private volatile boolean running;
+
+    /**
+     * @param queueSize         The maximum number of events waiting to be written.
+     * @param successSampleRate Log one of every n successful checks, 1 logs all and 0 none of the successful checks.
+     */
+    public CheckEventLog(int queueSize, int successSampleRate) {
+        this.queue = new ArrayBlockingQueue<CheckEvent>(Math.max(1, queueSize));
+        this.failureQueue = new ArrayBlockingQueue<CheckEvent>(Math.max(MIN_FAILURE_QUEUE_SIZE, queueSize / 10));
+        this.successSampleRate = successSampleRate;
+    }
+
+    public void start() {
+        this.running = true;
+        this.writer = new NamedThreadFactory("check-event-log").newThread(new Runnable() {
+            @Override
+            public void run() {
+                writeEvents();
+            }
+        });
+        this.writer.start();
+    }
+
+    public void shutdown() {
+        this.running = false;
+        if (this.writer != null) {
+            this.writer.interrupt();
+        }
+    }
+
+    public void log(CheckEvent event) {
+        if (!EVENTS.isInfoEnabled()) {
+            return;
+        }
+
+        if (event.isSuccess() && !this.isSampled()) {
+            return;
+        }
+
+        if (this.queue.offer(event)) {
+            return;
+        }
+
+        if (event.isSuccess()) {
+            this.dropped.incrementAndGet();
+        } else if (!this.failureQueue.offer(event)) {
+            // the writer can't keep up, failures are written anyway (at the cost of this check)
+            EVENTS.info(this.format(new StringBuilder(256), event));
+        }
+    }
+
+    private boolean isSampled() {
+        if (this.successSampleRate <= 0) {
+            return false;
+        }
+        return this.successSampleRate == 1 || this.successCounter.getAndIncrement() % this.successSampleRate == 0;
+    }
+
+    private void writeEvents() {
+        while (this.running || !this.queue.isEmpty() || !this.failureQueue.isEmpty()) {
+            try {
+                CheckEvent event = this.failureQueue.poll();
+                if (event == null) {
+                    event = this.queue.poll(1, TimeUnit.SECONDS);
+                }
+                if (event != null) {
+                    EVENTS.info(this.format(this.line, event));
+                }
+            } catch (InterruptedException e) {
+                // shutdown requested, write the remaining events
+                this.running = false;
+            } catch (RuntimeException e) {
+                LOG.warn("Exception while writing check event: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private String format(StringBuilder sb, CheckEvent event) {
+        sb.setLength(0);
+
+        sb.append("service=").append(event.getServiceName());
+        sb.append(" outcome=").append(event.getOutcome());
+        sb.append(" code=").append(event.getHttpCode());
+        sb.append(" cached=").append(event.isCached());
+        sb.append(" hedged=").append(event.isHedged());
+        sb.append(" total_us=").append(event.getTotalNanos() / 1000);
+        for (CheckPhase phase : PHASES) {
+            sb.append(' ').append(phase.getKey()).append("_us=").append(event.getPhaseNanos(phase) / 1000);
+        }
+
+        if (event.getMessage() != null) {
+            sb.append(" message=\"");
+            this.appendEscaped(sb, event.getMessage());
+            sb.append('"');
+        }
+
+        long droppedEvents = this.dropped.getAndSet(0);
+        if (droppedEvents > 0) {
+            sb.append(" dropped=").append(droppedEvents);
+        }
+
+        return sb.toString();
+    }
+
+    private void appendEscaped(StringBuilder sb, String message) {
+        int length = Math.min(message.length(), MAX_MESSAGE_LENGTH);
+        for (int i = 0; i < length; i++) {
+            char c = message.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c == '\n' || c == '\r' || c == '\t') {
+                sb.append(' ');
+            } else {
+                sb.append(c);
+            }
+        }
+        if (message.length() > MAX_MESSAGE_LENGTH) {
+            sb.append("...");
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck.event;
+
+/**
+ * The phases of a service check that are timed separately.
+ */
+public enum CheckPhase {
+
+    LOCK_WAIT("lock"),
+    TOKEN("token"),
+    DNS("dns"),
+    REQUEST("request"),
+    REAUTH("reauth"),
+    BODY("body");
+
+    private final String key;
+
+    CheckPhase(String key) {
+        this.key = key;
+    }
+
+    /**
+     * @return The (short) name of the phase as used in the check event log.
+     */
+    public String getKey() {
+        return this.key;
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.event;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of the checks of a single service, updated from the completed check events.
+ */
+public class CheckStatistics {
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder cached = new LongAdder();
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder lockWaitNanos = new LongAdder();
+    private final AtomicLong maxLockWaitNanos = new AtomicLong();
+    private volatile long lastLatencyNanos = -1;
+    private volatile long lastCheckTime;
+
+    public void record(CheckEvent event) {
+        this.checks.increment();
+        if (!event.isSuccess()) {
+            this.failures.increment();
+        }
+        if (event.isCached()) {
+            // a cached result did not wait for the lock or the service
+            this.cached.increment();
+            return;
+        }
+        if (event.isHedged()) {
+            this.hedged.increment();
+        }
+
+        long lockWait = event.getPhaseNanos(CheckPhase.LOCK_WAIT);
+        this.lockWaitNanos.add(lockWait);
+        long max = this.maxLockWaitNanos.get();
+        while (lockWait > max && !this.maxLockWaitNanos.compareAndSet(max, lockWait)) {
+            max = this.maxLockWaitNanos.get();
+        }
+
+        this.lastLatencyNanos = event.getTotalNanos();
+        this.lastCheckTime = event.getTimestamp();
+    }
+
+    public long getChecks() {
+        return this.checks.sum();
+    }
+
+    public long getFailures() {
+        return this.failures.sum();
+    }
+
+    public long getCached() {
+        return this.cached.sum();
+    }
+
+    public long getHedged() {
+        return this.hedged.sum();
+    }
+
+    public long getLockWaitNanos() {
+        return this.lockWaitNanos.sum();
+    }
+
+    public long getMaxLockWaitNanos() {
+        return this.maxLockWaitNanos.get();
+    }
+
+    /**
+     * @return The duration of the most recent executed (not cached) check, -1 if no check was executed.
+     */
+    public long getLastLatencyNanos() {
+        return this.lastLatencyNanos;
+    }
+
+    /**
+     * @return The time of the most recent executed (not cached) check, 0 if no check was executed.
+     */
+    public long getLastCheckTime() {
+        return this.lastCheckTime;
+    }
+
+}
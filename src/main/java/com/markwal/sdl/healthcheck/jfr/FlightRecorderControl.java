@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.jfr;
+
+import java.util.Map;
+
+/**
+ * The operations of the JVM's <code>jdk.management.jfr.FlightRecorderMXBean</code> that are used to control
+ * recordings. Used as an MXBean proxy so there is no compile time dependency on the JFR management API.
+ */
+public interface FlightRecorderControl {
+
+    long newRecording();
+
+    void setConfiguration(long recordingId, String contents);
+
+    void setRecordingOptions(long recordingId, Map<String, String> options);
+
+    void startRecording(long recordingId);
+
+    void copyTo(long recordingId, String outputFile);
+
+    void closeRecording(long recordingId);
+
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.jfr;
+
+import com.markwal.sdl.healthcheck.HealthCheckException;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Starts time bounded Java Flight Recorder recordings with the profile of the application (healthcheck.jfc: method
+ * sampling, lock contention, allocation, socket I/O and the custom check events) and keeps the resulting files.
+ * <p>
+ * Only one recording runs at a time, the number of kept files is limited (the oldest are removed). When disabled
+ * (the default) recordings can neither be started nor listed or downloaded. Recordings are controlled through the
+ * Flight Recorder MXBean of the JVM, if the JVM has no Flight Recorder starting a recording fails with an exception.
+ */
+public class FlightRecordings {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FlightRecordings.class);
+    private static final String MXBEAN_NAME = "jdk.management.jfr:type=FlightRecorder";
+    private static final String PROFILE = "healthcheck.jfc";
+    private static final Pattern FILE_NAME = Pattern.compile("healthcheck-\\d{8}-\\d{6}\\.jfr");
+    // the time the recorder gets to stop the recording after its duration
+    private static final long STOP_GRACE_PERIOD = 1000;
+    // the time after which a recording that can't be written is given up
+    private static final long WRITE_GRACE_PERIOD = 30000;
+
+    private final boolean enabled;
+    private final File directory;
+    private final int maxDuration;
+    private final int maxFiles;
+    private Recording current;
+
+    /**
+     * @param enabled     False to refuse all recordings.
+     * @param directory   The directory the recordings are written to.
+     * @param maxDuration The maximum duration of a recording in seconds.
+     * @param maxFiles    The maximum number of recording files kept in the directory.
+     */
+    public FlightRecordings(boolean enabled, File directory, int maxDuration, int maxFiles) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.maxDuration = maxDuration;
+        this.maxFiles = Math.max(1, maxFiles);
+    }
+
+    /**
+     * Starts a recording that stops by itself after the duration, the file can be downloaded when it is finished.
+     *
+     * @param duration The duration of the recording in seconds.
+     * @return The started recording.
+     */
+    public synchronized RecordingInfo start(int duration) {
+        this.checkEnabled();
+        if (duration < 1 || duration > this.maxDuration) {
+            throw new HealthCheckException("Duration must be between 1 and " + this.maxDuration + " seconds");
+        }
+        this.closeFinished();
+        if (this.current != null) {
+            throw new HealthCheckException("Recording '" + this.current.name + "' is running until "
+                    + new Date(this.current.stopTime));
+        }
+
+        FlightRecorderControl control = getControl();
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            throw new HealthCheckException("Unable to create recording directory '" + this.directory + "'");
+        }
+        this.removeOldRecordings(this.maxFiles - 1);
+
+        long now = System.currentTimeMillis();
+        String name = "healthcheck-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(now)) + ".jfr";
+        Map<String, String> options = new HashMap<String, String>();
+        options.put("name", name);
+        options.put("duration", duration + " s");
+        options.put("disk", "true");
+
+        long id = control.newRecording();
+        try {
+            control.setConfiguration(id, readProfile());
+            control.setRecordingOptions(id, options);
+            control.startRecording(id);
+        } catch (RuntimeException e) {
+            closeQuietly(control, id);
+            throw new HealthCheckException("Unable to start recording: " + e.getMessage(), e);
+        }
+
+        this.current = new Recording(id, name, now, now + duration * 1000L);
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Started flight recording '" + name + "' for " + duration + " seconds");
+        }
+        return this.toInfo(this.current);
+    }
+
+    /**
+     * @return The running recording and the kept recording files, the most recent first.
+     */
+    public synchronized List<RecordingInfo> getRecordings() {
+        this.checkEnabled();
+        this.closeFinished();
+
+        List<RecordingInfo> result = new ArrayList<RecordingInfo>();
+        if (this.current != null) {
+            result.add(this.toInfo(this.current));
+        }
+        for (File file : this.listFiles()) {
+            if (this.current == null || !this.current.name.equals(file.getName())) {
+                result.add(new RecordingInfo(file.getName(), "finished", 0, file.lastModified(), file.length()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param name The name of a finished recording.
+     * @return The recording file.
+     */
+    public synchronized File getRecordingFile(String name) {
+        this.checkEnabled();
+        this.closeFinished();
+        if (name == null || !FILE_NAME.matcher(name).matches()) {
+            throw new RecordingNotFoundException("Recording '" + name + "' not found");
+        }
+        if (this.current != null && this.current.name.equals(name)) {
+            throw new HealthCheckException("Recording '" + name + "' is running until "
+                    + new Date(this.current.stopTime));
+        }
+
+        File file = new File(this.directory, name);
+        if (!file.isFile()) {
+            throw new RecordingNotFoundException("Recording '" + name + "' not found");
+        }
+        return file;
+    }
+
+    private void checkEnabled() {
+        if (!this.enabled) {
+            throw new HealthCheckException("Flight recordings are disabled (config.jfr.enabled)");
+        }
+    }
+
+    /**
+     * Writes the recording to its file and releases it when it has stopped. The recording is copied instead of using
+     * the 'destination' option, which the Flight Recorder MXBean of Java 8 does not support.
+     */
+    private void closeFinished() {
+        if (this.current == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now < this.current.stopTime + STOP_GRACE_PERIOD) {
+            return;
+        }
+
+        FlightRecorderControl control = getControl();
+        File file = new File(this.directory, this.current.name);
+        try {
+            control.copyTo(this.current.id, file.getAbsolutePath());
+        } catch (RuntimeException e) {
+            if (now < this.current.stopTime + WRITE_GRACE_PERIOD) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Flight recording '" + this.current.name + "' not written yet: " + e.getMessage());
+                }
+                return;
+            }
+            LOG.warn("Unable to write flight recording '" + this.current.name + "': " + e.getMessage());
+        }
+        closeQuietly(control, this.current.id);
+        this.current = null;
+    }
+
+    private RecordingInfo toInfo(Recording recording) {
+        return new RecordingInfo(recording.name, "running", recording.startTime, recording.stopTime, 0);
+    }
+
+    private List<File> listFiles() {
+        File[] files = this.directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && FILE_NAME.matcher(file.getName()).matches();
+            }
+        });
+        if (files == null) {
+            return new ArrayList<File>();
+        }
+
+        // the names contain the start time, so the reverse order of the names is the most recent first
+        List<File> result = new ArrayList<File>(Arrays.asList(files));
+        result.sort(new Comparator<File>() {
+            @Override
+            public int compare(File file1, File file2) {
+                return file2.getName().compareTo(file1.getName());
+            }
+        });
+        return result;
+    }
+
+    private void removeOldRecordings(int keep) {
+        List<File> files = this.listFiles();
+        for (File file : files.subList(Math.min(keep, files.size()), files.size())) {
+            if (file.delete()) {
+                if (LOG.isInfoEnabled()) {
+                    LOG.info("Removed old flight recording '" + file.getName() + "'");
+                }
+            } else {
+                LOG.warn("Unable to remove old flight recording '" + file.getAbsolutePath() + "'");
+            }
+        }
+    }
+
+    private static FlightRecorderControl getControl() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name;
+        try {
+            name = new ObjectName(MXBEAN_NAME);
+        } catch (MalformedObjectNameException e) {
+            throw new HealthCheckException(e);
+        }
+        if (!server.isRegistered(name)) {
+            throw new HealthCheckException("Java Flight Recorder is not available in this JVM");
+        }
+        return JMX.newMXBeanProxy(server, name, FlightRecorderControl.class);
+    }
+
+    private static String readProfile() {
+        try (InputStream in = FlightRecordings.class.getClassLoader().getResourceAsStream(PROFILE)) {
+            if (in == null) {
+                throw new HealthCheckException("Flight recorder profile '" + PROFILE + "' not found");
+            }
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new HealthCheckException("Unable to read flight recorder profile '" + PROFILE + "'", e);
+        }
+    }
+
+    private static void closeQuietly(FlightRecorderControl control, long id) {
+        try {
+            control.closeRecording(id);
+        } catch (RuntimeException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Unable to close recording " + id + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class Recording {
+
+        private final long id;
+        private final String name;
+        private final long startTime;
+        private final long stopTime;
+
+        private Recording(long id, String name, long startTime, long stopTime) {
+            this.id = id;
+            this.name = name;
+            this.startTime = startTime;
+            this.stopTime = stopTime;
+        }
+    }
+
+}
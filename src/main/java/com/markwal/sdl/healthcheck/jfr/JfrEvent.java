@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.jfr;
+
+/**
+ * A started Flight Recorder event, see {@link JfrEventType#begin()}.
+ */
+public class JfrEvent {
+
+    private final JfrEventType type;
+    private final Object event;
+
+    JfrEvent(JfrEventType type, Object event) {
+        this.type = type;
+        this.event = event;
+    }
+
+    /**
+     * Ends the event and writes it to the recording (if it exceeds the threshold of the recording).
+     */
+    public void commit(String serviceName, String outcome) {
+        this.type.commit(this.event, serviceName, outcome);
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.jfr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A custom Flight Recorder event type with a service name and an outcome, created at runtime through
+ * <code>jdk.jfr.EventFactory</code> so the application still compiles and runs on a JVM without JFR. When JFR is not
+ * available, or no recording has the event enabled, {@link #begin()} returns null and the event costs nothing more than
+ * that check.
+ */
+public class JfrEventType {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JfrEventType.class);
+    private static final String CATEGORY = "SDL Health Check";
+
+    private final String name;
+    private final Object eventType;
+    private final Object factory;
+    private final Method isEnabled;
+    private final Method newEvent;
+    private final Method eventBegin;
+    private final Method eventSet;
+    private final Method eventEnd;
+    private final Method eventCommit;
+
+    private JfrEventType(String name, Object factory, Object eventType, Method isEnabled, Method newEvent,
+                         Method eventBegin, Method eventSet, Method eventEnd, Method eventCommit) {
+        this.name = name;
+        this.factory = factory;
+        this.eventType = eventType;
+        this.isEnabled = isEnabled;
+        this.newEvent = newEvent;
+        this.eventBegin = eventBegin;
+        this.eventSet = eventSet;
+        this.eventEnd = eventEnd;
+        this.eventCommit = eventCommit;
+    }
+
+    /**
+     * Registers an event type with the fields 'serviceName' and 'outcome'.
+     *
+     * @return The event type, which does nothing if JFR is not available.
+     */
+    static JfrEventType create(String name, String label, String description) {
+        try {
+            ClassLoader loader = ClassLoader.getSystemClassLoader();
+            Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement", true, loader);
+            Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor", true, loader);
+            Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory", true, loader);
+            Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType", true, loader);
+            Class<?> eventClass = Class.forName("jdk.jfr.Event", true, loader);
+
+            Constructor<?> annotation = annotationElementClass.getConstructor(Class.class, Object.class);
+            List<Object> annotations = new ArrayList<Object>();
+            annotations.add(annotation.newInstance(Class.forName("jdk.jfr.Name", true, loader), name));
+            annotations.add(annotation.newInstance(Class.forName("jdk.jfr.Label", true, loader), label));
+            annotations.add(annotation.newInstance(Class.forName("jdk.jfr.Description", true, loader), description));
+            Object categories = Array.newInstance(String.class, 1);
+            Array.set(categories, 0, CATEGORY);
+            annotations.add(annotation.newInstance(Class.forName("jdk.jfr.Category", true, loader), categories));
+
+            Class<?> labelClass = Class.forName("jdk.jfr.Label", true, loader);
+            Constructor<?> field = valueDescriptorClass.getConstructor(Class.class, String.class, List.class);
+            List<Object> fields = Arrays.asList(
+                    field.newInstance(String.class, "serviceName",
+                            Arrays.asList(annotation.newInstance(labelClass, "Service Name"))),
+                    field.newInstance(String.class, "outcome",
+                            Arrays.asList(annotation.newInstance(labelClass, "Outcome"))));
+
+            Object factory = eventFactoryClass.getMethod("create", List.class, List.class)
+                    .invoke(null, annotations, fields);
+            Object eventType = eventFactoryClass.getMethod("getEventType").invoke(factory);
+
+            return new JfrEventType(name, factory, eventType,
+                    eventTypeClass.getMethod("isEnabled"),
+                    eventFactoryClass.getMethod("newEvent"),
+                    eventClass.getMethod("begin"),
+                    eventClass.getMethod("set", int.class, Object.class),
+                    eventClass.getMethod("end"),
+                    eventClass.getMethod("commit"));
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            if (LOG.isInfoEnabled()) {
+                LOG.info("Flight Recorder events are not available (" + e + "), event '" + name + "' is disabled");
+            }
+            return new JfrEventType(name, null, null, null, null, null, null, null, null);
+        }
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Starts the timing of an event.
+     *
+     * @return The event, or null if the event is not recorded.
+     */
+    public JfrEvent begin() {
+        if (this.factory == null) {
+            return null;
+        }
+
+        try {
+            if (!(Boolean) this.isEnabled.invoke(this.eventType)) {
+                return null;
+            }
+            Object event = this.newEvent.invoke(this.factory);
+            this.eventBegin.invoke(event);
+            return new JfrEvent(this, event);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    void commit(Object event, String serviceName, String outcome) {
+        try {
+            this.eventEnd.invoke(event);
+            this.eventSet.invoke(event, 0, serviceName);
+            this.eventSet.invoke(event, 1, outcome);
+            this.eventCommit.invoke(event);
+        } catch (ReflectiveOperationException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Unable to commit event '" + this.name + "': " + e.getMessage());
+            }
+        }
+    }
+
+}
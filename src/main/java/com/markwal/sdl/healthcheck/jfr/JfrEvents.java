@@ -0,0 +1,37 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.jfr;
+
+/**
+ * The custom Flight Recorder events of the application. They are enabled in the healthcheck.jfc profile used by the
+ * recordings started through the admin endpoint.
+ */
+public final class JfrEvents {
+
+    public static final JfrEventType STATUS_REQUEST = JfrEventType.create("com.markwal.sdl.healthcheck.StatusRequest",
+            "Status Request", "Status request of a single service, including the disabled check");
+
+    public static final JfrEventType SERVICE_CHECK = JfrEventType.create("com.markwal.sdl.healthcheck.ServiceCheck",
+            "Service Check", "Check of a service by its connection, including the wait for the connection lock");
+
+    public static final JfrEventType TOKEN_REQUEST = JfrEventType.create("com.markwal.sdl.healthcheck.TokenRequest",
+            "Token Request", "Request of an OAuth token for a service");
+
+    private JfrEvents() {
+    }
+
+}
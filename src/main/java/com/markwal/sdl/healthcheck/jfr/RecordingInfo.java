@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.jfr;
+
+/**
+ * A Flight Recorder recording started through the admin endpoint.
+ */
+public class RecordingInfo {
+
+    private final String name;
+    private final String state;
+    private final long startTime;
+    private final long stopTime;
+    private final long size;
+
+    public RecordingInfo(String name, String state, long startTime, long stopTime, long size) {
+        this.name = name;
+        this.state = state;
+        this.startTime = startTime;
+        this.stopTime = stopTime;
+        this.size = size;
+    }
+
+    /**
+     * @return The name of the recording file, used to download the recording.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return 'running' while the recording is in progress, 'finished' when the file can be downloaded.
+     */
+    public String getState() {
+        return this.state;
+    }
+
+    public long getStartTime() {
+        return this.startTime;
+    }
+
+    public long getStopTime() {
+        return this.stopTime;
+    }
+
+    /**
+     * @return The size of the recording file in bytes, 0 while the recording is running.
+     */
+    public long getSize() {
+        return this.size;
+    }
+
+}
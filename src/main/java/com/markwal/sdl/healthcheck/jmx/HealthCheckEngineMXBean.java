@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.jmx;
+
+/**
+ * Runtime settings of the health check engine, changes apply immediately and last until the application is restarted
+ * (a reload of the services does not reset them).
+ */
+public interface HealthCheckEngineMXBean {
+
+    /**
+     * @return The number of threads checking groups of services in parallel.
+     */
+    int getCheckThreads();
+
+    void setCheckThreads(int checkThreads);
+
+    int getCheckShardSize();
+
+    void setCheckShardSize(int checkShardSize);
+
+    /**
+     * @return The default interval in seconds between scheduled probes, 0 disables scheduled probes.
+     */
+    int getProbeInterval();
+
+    void setProbeInterval(int probeInterval);
+
+    int getConnectionRequestTimeout();
+
+    void setConnectionRequestTimeout(int timeout);
+
+    int getConnectTimeout();
+
+    void setConnectTimeout(int timeout);
+
+    int getSocketTimeout();
+
+    void setSocketTimeout(int timeout);
+
+    int getConnectionCount();
+
+    int getActiveChecks();
+
+    int getQueuedChecks();
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.jmx;
+
+import com.markwal.sdl.healthcheck.HealthCheckEngine;
+import com.markwal.sdl.healthcheck.transport.ProbeTransport;
+import org.apache.http.client.config.RequestConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exposes the runtime settings of the engine and its transport, see {@link HealthCheckEngineMXBean}.
+ */
+public class HealthCheckEngineManagement implements HealthCheckEngineMXBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HealthCheckEngineManagement.class);
+
+    private final HealthCheckEngine engine;
+    private final ProbeTransport transport;
+
+    public HealthCheckEngineManagement(HealthCheckEngine engine, ProbeTransport transport) {
+        this.engine = engine;
+        this.transport = transport;
+    }
+
+    @Override
+    public int getCheckThreads() {
+        return this.engine.getCheckThreads();
+    }
+
+    @Override
+    public void setCheckThreads(int checkThreads) {
+        requirePositive("CheckThreads", checkThreads);
+        logChange("CheckThreads", checkThreads);
+        this.engine.setCheckThreads(checkThreads);
+    }
+
+    @Override
+    public int getCheckShardSize() {
+        return this.engine.getCheckShardSize();
+    }
+
+    @Override
+    public void setCheckShardSize(int checkShardSize) {
+        requirePositive("CheckShardSize", checkShardSize);
+        logChange("CheckShardSize", checkShardSize);
+        this.engine.setCheckShardSize(checkShardSize);
+    }
+
+    @Override
+    public int getProbeInterval() {
+        return this.engine.getProbeInterval();
+    }
+
+    @Override
+    public void setProbeInterval(int probeInterval) {
+        if (probeInterval < 0) {
+            throw new IllegalArgumentException("ProbeInterval must not be negative");
+        }
+        logChange("ProbeInterval", probeInterval);
+        this.engine.setProbeInterval(probeInterval);
+    }
+
+    @Override
+    public int getConnectionRequestTimeout() {
+        return this.transport.getRequestConfig().getConnectionRequestTimeout();
+    }
+
+    @Override
+    public void setConnectionRequestTimeout(int timeout) {
+        requirePositive("ConnectionRequestTimeout", timeout);
+        logChange("ConnectionRequestTimeout", timeout);
+        RequestConfig current = this.transport.getRequestConfig();
+        this.transport.setTimeouts(timeout, current.getConnectTimeout(), current.getSocketTimeout());
+    }
+
+    @Override
+    public int getConnectTimeout() {
+        return this.transport.getRequestConfig().getConnectTimeout();
+    }
+
+    @Override
+    public void setConnectTimeout(int timeout) {
+        requirePositive("ConnectTimeout", timeout);
+        logChange("ConnectTimeout", timeout);
+        RequestConfig current = this.transport.getRequestConfig();
+        this.transport.setTimeouts(current.getConnectionRequestTimeout(), timeout, current.getSocketTimeout());
+    }
+
+    @Override
+    public int getSocketTimeout() {
+        return this.transport.getRequestConfig().getSocketTimeout();
+    }
+
+    @Override
+    public void setSocketTimeout(int timeout) {
+        requirePositive("SocketTimeout", timeout);
+        logChange("SocketTimeout", timeout);
+        RequestConfig current = this.transport.getRequestConfig();
+        this.transport.setTimeouts(current.getConnectionRequestTimeout(), current.getConnectTimeout(), timeout);
+    }
+
+    @Override
+    public int getConnectionCount() {
+        return this.engine.getConnectionCount();
+    }
+
+    @Override
+    public int getActiveChecks() {
+        return this.engine.getActiveChecks();
+    }
+
+    @Override
+    public int getQueuedChecks() {
+        return this.engine.getQueuedChecks();
+    }
+
+    private static void requirePositive(String attribute, int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException(attribute + " must be at least 1");
+        }
+    }
+
+    private static void logChange(String attribute, int value) {
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Setting " + attribute + " to " + value + " (JMX)");
+        }
+    }
+
+}
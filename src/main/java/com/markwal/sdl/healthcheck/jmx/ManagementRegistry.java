@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.jmx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Registers the MBeans of the application with the platform MBean server (visible in JConsole or JMC) and keeps track
+ * of them so they can be removed again. Failures are logged, JMX is never a reason for a check to fail.
+ */
+public class ManagementRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ManagementRegistry.class);
+    private static final String DOMAIN = "com.markwal.sdl.healthcheck";
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final Set<ObjectName> registered = new HashSet<ObjectName>();
+
+    public static ObjectName getEngineName() {
+        return createName("type=HealthCheckEngine");
+    }
+
+    public static ObjectName getConnectionName(String serviceName) {
+        return createName("type=ServiceConnection,name=" + ObjectName.quote(serviceName));
+    }
+
+    private static ObjectName createName(String properties) {
+        try {
+            return new ObjectName(DOMAIN + ":" + properties);
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException("Invalid MBean name: " + properties, e);
+        }
+    }
+
+    /**
+     * Registers an MBean, an MBean registered earlier with the same name (e.g. by a previous instance) is replaced.
+     */
+    public synchronized void register(ObjectName name, Object mbean) {
+        try {
+            if (this.server.isRegistered(name)) {
+                this.server.unregisterMBean(name);
+            }
+            this.server.registerMBean(mbean, name);
+            this.registered.add(name);
+        } catch (JMException e) {
+            LOG.warn("Unable to register MBean '" + name + "': " + e.getMessage());
+        }
+    }
+
+    public synchronized void unregister(ObjectName name) {
+        if (!this.registered.remove(name)) {
+            return;
+        }
+
+        try {
+            if (this.server.isRegistered(name)) {
+                this.server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            LOG.warn("Unable to unregister MBean '" + name + "': " + e.getMessage());
+        }
+    }
+
+    public synchronized void unregisterAll() {
+        for (ObjectName name : new HashSet<ObjectName>(this.registered)) {
+            this.unregister(name);
+        }
+    }
+
+}
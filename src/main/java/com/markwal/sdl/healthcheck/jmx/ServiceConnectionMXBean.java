@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.jmx;
+
+import java.util.Date;
+
+/**
+ * Statistics of the connection to a single service.
+ */
+public interface ServiceConnectionMXBean {
+
+    String getServiceName();
+
+    /**
+     * @return The status of the most recent check, null if the service was not checked yet.
+     */
+    String getLastStatus();
+
+    String getLastStatusMessage();
+
+    Date getLastCheckTime();
+
+    /**
+     * @return The duration in milliseconds of the most recent executed check, -1 if no check was executed.
+     */
+    double getLastLatencyMillis();
+
+    /**
+     * @return The 95th percentile of the check request latency in milliseconds, -1 if there are not enough samples.
+     */
+    long getLatency95thPercentileMillis();
+
+    Date getTokenExpireTime();
+
+    Date getTokenRefreshTime();
+
+    long getCheckCount();
+
+    long getFailureCount();
+
+    /**
+     * @return The number of checks answered with a previous result because the probe budget was exhausted.
+     */
+    long getCachedCount();
+
+    long getHedgedCount();
+
+    /**
+     * @return The total time in milliseconds checks waited for the lock of the connection.
+     */
+    double getLockWaitTotalMillis();
+
+    double getLockWaitMaxMillis();
+
+    double getLockWaitAverageMillis();
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.jmx;
+
+import com.markwal.sdl.healthcheck.ServiceConnection;
+import com.markwal.sdl.healthcheck.ServiceStatus;
+import com.markwal.sdl.healthcheck.event.CheckStatistics;
+
+import java.util.Date;
+
+/**
+ * Exposes the statistics of a service connection, see {@link ServiceConnectionMXBean}.
+ */
+public class ServiceConnectionManagement implements ServiceConnectionMXBean {
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private final ServiceConnection connection;
+
+    public ServiceConnectionManagement(ServiceConnection connection) {
+        this.connection = connection;
+    }
+
+    @Override
+    public String getServiceName() {
+        return this.connection.getServiceName();
+    }
+
+    @Override
+    public String getLastStatus() {
+        ServiceStatus status = this.connection.getLastStatus();
+        return status == null ? null : status.getServiceStatus();
+    }
+
+    @Override
+    public String getLastStatusMessage() {
+        ServiceStatus status = this.connection.getLastStatus();
+        return status == null ? null : status.getStatusMessage();
+    }
+
+    @Override
+    public Date getLastCheckTime() {
+        ServiceStatus status = this.connection.getLastStatus();
+        return status == null ? null : new Date(status.getCheckTime());
+    }
+
+    @Override
+    public double getLastLatencyMillis() {
+        long latency = this.connection.getStatistics().getLastLatencyNanos();
+        return latency < 0 ? -1 : latency / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public long getLatency95thPercentileMillis() {
+        return this.connection.getLatencyPercentile(95);
+    }
+
+    @Override
+    public Date getTokenExpireTime() {
+        return toDate(this.connection.getTokenExpireTime());
+    }
+
+    @Override
+    public Date getTokenRefreshTime() {
+        return toDate(this.connection.getTokenRefreshTime());
+    }
+
+    @Override
+    public long getCheckCount() {
+        return this.connection.getStatistics().getChecks();
+    }
+
+    @Override
+    public long getFailureCount() {
+        return this.connection.getStatistics().getFailures();
+    }
+
+    @Override
+    public long getCachedCount() {
+        return this.connection.getStatistics().getCached();
+    }
+
+    @Override
+    public long getHedgedCount() {
+        return this.connection.getStatistics().getHedged();
+    }
+
+    @Override
+    public double getLockWaitTotalMillis() {
+        return this.connection.getStatistics().getLockWaitNanos() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLockWaitMaxMillis() {
+        return this.connection.getStatistics().getMaxLockWaitNanos() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLockWaitAverageMillis() {
+        CheckStatistics statistics = this.connection.getStatistics();
+        long executed = statistics.getChecks() - statistics.getCached();
+        if (executed <= 0) {
+            return 0;
+        }
+        return statistics.getLockWaitNanos() / NANOS_PER_MILLI / executed;
+    }
+
+    private static Date toDate(Long time) {
+        return time == null ? null : new Date(time);
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.lite;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import com.markwal.sdl.healthcheck.HealthCheckException;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serializes objects from their getters the way the Spring mode (Jackson) does, honouring {@link JsonIgnore} and
+ * {@link JsonInclude} with <code>NON_NULL</code>, so both modes produce the same responses.
+ */
+class BeanJsonSerializer implements JsonSerializer<Object> {
+
+    private final Map<Class<?>, List<PropertyDescriptor>> properties =
+            new ConcurrentHashMap<Class<?>, List<PropertyDescriptor>>();
+
+    @Override
+    public JsonElement serialize(Object src, Type typeOfSrc, JsonSerializationContext context) {
+        JsonObject result = new JsonObject();
+        for (PropertyDescriptor property : getProperties(src.getClass())) {
+            Method getter = property.getReadMethod();
+            Object value;
+            try {
+                value = getter.invoke(src);
+            } catch (ReflectiveOperationException e) {
+                throw new HealthCheckException("Unable to read property '" + property.getName() + "'", e);
+            }
+
+            if (value == null) {
+                JsonInclude include = getter.getAnnotation(JsonInclude.class);
+                if (include == null || include.value() != JsonInclude.Include.NON_NULL) {
+                    result.add(property.getName(), JsonNull.INSTANCE);
+                }
+            } else {
+                result.add(property.getName(), context.serialize(value));
+            }
+        }
+        return result;
+    }
+
+    private List<PropertyDescriptor> getProperties(Class<?> type) {
+        List<PropertyDescriptor> result = this.properties.get(type);
+        if (result == null) {
+            result = new ArrayList<PropertyDescriptor>();
+            try {
+                BeanInfo beanInfo = Introspector.getBeanInfo(type, Object.class);
+                for (PropertyDescriptor property : beanInfo.getPropertyDescriptors()) {
+                    Method getter = property.getReadMethod();
+                    if (getter != null && getter.getAnnotation(JsonIgnore.class) == null) {
+                        result.add(property);
+                    }
+                }
+            } catch (IntrospectionException e) {
+                throw new HealthCheckException("Unable to introspect " + type.getName(), e);
+            }
+            this.properties.put(type, result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.lite;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.markwal.sdl.healthcheck.ErrorResponse;
+import com.markwal.sdl.healthcheck.HealthCheckEngine;
+import com.markwal.sdl.healthcheck.HealthCheckException;
+import com.markwal.sdl.healthcheck.InvalidParameterException;
+import com.markwal.sdl.healthcheck.ProbeScheduleEntry;
+import com.markwal.sdl.healthcheck.ServiceStatus;
+import com.markwal.sdl.healthcheck.TokenException;
+import com.markwal.sdl.healthcheck.config.GroupNotFoundException;
+import com.markwal.sdl.healthcheck.config.ServiceNotFoundException;
+import com.markwal.sdl.healthcheck.jfr.RecordingInfo;
+import com.markwal.sdl.healthcheck.jfr.RecordingNotFoundException;
+import com.markwal.sdl.healthcheck.trace.SlowCheck;
+import com.markwal.sdl.healthcheck.trace.TraceEventFormat;
+import com.markwal.sdl.healthcheck.trace.TraceSpan;
+import com.markwal.sdl.healthcheck.transport.TransportStats;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves the endpoints of the HealthCheckController (same paths, status codes and JSON) for the lite mode.
+ */
+class HealthCheckHandler implements HttpHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HealthCheckHandler.class);
+    private static final String JSON = "application/json;charset=UTF-8";
+    private static final String TEXT = "text/plain;charset=UTF-8";
+
+    private final HealthCheckEngine engine;
+    private final Gson gson;
+
+    HealthCheckHandler(HealthCheckEngine engine) {
+        this.engine = engine;
+
+        BeanJsonSerializer beanSerializer = new BeanJsonSerializer();
+        this.gson = new GsonBuilder()
+                .serializeNulls()
+                .disableHtmlEscaping()
+                .registerTypeHierarchyAdapter(ServiceStatus.class, beanSerializer)
+                .registerTypeHierarchyAdapter(ProbeScheduleEntry.class, beanSerializer)
+                .registerTypeHierarchyAdapter(TransportStats.class, beanSerializer)
+                .registerTypeHierarchyAdapter(ErrorResponse.class, beanSerializer)
+                .registerTypeHierarchyAdapter(SlowCheck.class, beanSerializer)
+                .registerTypeHierarchyAdapter(TraceSpan.class, beanSerializer)
+                .registerTypeHierarchyAdapter(RecordingInfo.class, beanSerializer)
+                .create();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Request " + exchange.getRequestMethod() + " " + path);
+            }
+
+            try {
+                dispatch(exchange, path);
+            } catch (ServiceNotFoundException e) {
+                LOG.warn("ServiceNotFoundException", e);
+                sendJson(exchange, HttpURLConnection.HTTP_NOT_FOUND,
+                        new ErrorResponse("ServiceNotFoundException: " + e.getMessage()));
+            } catch (GroupNotFoundException e) {
+                LOG.warn("GroupNotFoundException", e);
+                sendJson(exchange, HttpURLConnection.HTTP_NOT_FOUND,
+                        new ErrorResponse("GroupNotFoundException: " + e.getMessage()));
+            } catch (RecordingNotFoundException e) {
+                LOG.warn("RecordingNotFoundException", e);
+                sendJson(exchange, HttpURLConnection.HTTP_NOT_FOUND,
+                        new ErrorResponse("RecordingNotFoundException: " + e.getMessage()));
+            } catch (InvalidParameterException e) {
+                LOG.warn("InvalidParameterException: " + e.getMessage());
+                sendJson(exchange, HttpURLConnection.HTTP_BAD_REQUEST, new ErrorResponse(e.getMessage()));
+            } catch (TokenException e) {
+                LOG.warn("TokenException", e);
+                sendJson(exchange, HttpURLConnection.HTTP_INTERNAL_ERROR,
+                        new ErrorResponse("TokenException: " + e.getMessage()));
+            } catch (HealthCheckException e) {
+                LOG.warn("HealthCheckException", e);
+                sendJson(exchange, HttpURLConnection.HTTP_INTERNAL_ERROR,
+                        new ErrorResponse("HealthCheckException: " + e.getMessage()));
+            } catch (RuntimeException e) {
+                LOG.warn("Exception", e);
+                sendJson(exchange, HttpURLConnection.HTTP_INTERNAL_ERROR,
+                        new ErrorResponse("Exception: " + e.getClass().getName() + ": " + e.getMessage()));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void dispatch(HttpExchange exchange, String path) throws IOException {
+        if ("/reload".equals(path)) {
+            this.engine.reload();
+            send(exchange, HttpURLConnection.HTTP_OK, TEXT, "ok");
+        } else if ("/all".equals(path)) {
+            Map<String, String> parameters = getQueryParameters(exchange);
+            String environment = parameters.get("env");
+            List<ServiceStatus> statuses;
+            if (HealthCheckEngine.isTcpLevel(parameters.get("level"))) {
+                statuses = this.engine.sweepServices(this.engine.selectServices(null, environment));
+            } else if (environment != null) {
+                statuses = this.engine.checkEnvironment(environment);
+            } else {
+                statuses = this.engine.checkAll();
+            }
+            sendJson(exchange, HttpURLConnection.HTTP_OK, statuses);
+        } else if (path.startsWith("/group/") && isSegment(path, "/group/")) {
+            String tag = path.substring("/group/".length());
+            Map<String, String> parameters = getQueryParameters(exchange);
+            String environment = parameters.get("env");
+            if (HealthCheckEngine.isTcpLevel(parameters.get("level"))) {
+                sendJson(exchange, HttpURLConnection.HTTP_OK,
+                        this.engine.sweepServices(this.engine.selectServices(tag, environment)));
+            } else {
+                sendJson(exchange, HttpURLConnection.HTTP_OK, this.engine.checkGroup(tag, environment));
+            }
+        } else if ("/schedule".equals(path)) {
+            sendJson(exchange, HttpURLConnection.HTTP_OK, this.engine.getSchedule());
+        } else if ("/debug/slow-checks".equals(path)) {
+            List<SlowCheck> checks = this.engine.getSlowChecks();
+            if ("trace".equals(getQueryParameters(exchange).get("format"))) {
+                sendJson(exchange, HttpURLConnection.HTTP_OK, TraceEventFormat.toTrace(checks));
+            } else {
+                sendJson(exchange, HttpURLConnection.HTTP_OK, checks);
+            }
+        } else if ("/stats/transport".equals(path)) {
+            sendJson(exchange, HttpURLConnection.HTTP_OK, this.engine.getTransportStats());
+        } else if ("/admin/jfr/start".equals(path)) {
+            String duration = getQueryParameters(exchange).get("duration");
+            int seconds;
+            try {
+                seconds = duration == null ? 60 : Integer.parseInt(duration);
+            } catch (NumberFormatException e) {
+                throw new InvalidParameterException("duration", duration);
+            }
+            sendJson(exchange, HttpURLConnection.HTTP_OK, this.engine.startRecording(seconds));
+        } else if ("/admin/jfr".equals(path)) {
+            sendJson(exchange, HttpURLConnection.HTTP_OK, this.engine.getRecordings());
+        } else if (path.startsWith("/admin/jfr/") && isSegment(path, "/admin/jfr/")) {
+            sendFile(exchange, this.engine.getRecordingFile(path.substring("/admin/jfr/".length())));
+        } else if (path.startsWith("/status/") && isSegment(path, "/status/")) {
+            ServiceStatus status = this.engine.requestStatus(path.substring("/status/".length()));
+            if (status.isOk()) {
+                sendJson(exchange, HttpURLConnection.HTTP_OK, status);
+            } else {
+                sendJson(exchange, HttpURLConnection.HTTP_INTERNAL_ERROR, status);
+            }
+        } else {
+            sendJson(exchange, HttpURLConnection.HTTP_NOT_FOUND, new ErrorResponse("Not Found: " + path));
+        }
+    }
+
+    /**
+     * @return true if the path consists of the prefix followed by a single, non empty, path segment.
+     */
+    private static boolean isSegment(String path, String prefix) {
+        return path.length() > prefix.length() && path.indexOf('/', prefix.length()) < 0;
+    }
+
+    private static Map<String, String> getQueryParameters(HttpExchange exchange) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<String, String>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return parameters;
+        }
+
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int separator = pair.indexOf('=');
+            String name = URLDecoder.decode(separator < 0 ? pair : pair.substring(0, separator), "UTF-8");
+            String value = separator < 0 ? "" : URLDecoder.decode(pair.substring(separator + 1), "UTF-8");
+            if (!parameters.containsKey(name)) {
+                parameters.put(name, value);
+            }
+        }
+        return parameters;
+    }
+
+    private void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        send(exchange, status, JSON, this.gson.toJson(body));
+    }
+
+    private static void sendFile(HttpExchange exchange, File file) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"" + file.getName() + "\"");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, -1);
+            return;
+        }
+
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, file.length());
+        try (OutputStream out = exchange.getResponseBody()) {
+            Files.copy(file.toPath(), out);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.lite;
+
+import com.markwal.sdl.healthcheck.HealthCheckEngine;
+import com.markwal.sdl.healthcheck.HealthCheckException;
+import com.markwal.sdl.healthcheck.NamedThreadFactory;
+import com.markwal.sdl.healthcheck.StartupMetrics;
+import com.markwal.sdl.healthcheck.config.Configuration;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Alternative launcher that serves the health check endpoints from the JDK's embedded HTTP server, without the Spring
+ * context, MVC and Jetty. The configuration is read from the same application.properties files as the Spring mode.
+ */
+public class LiteHealthCheckServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LiteHealthCheckServer.class);
+    private static final String PROPERTIES_FILE = "application.properties";
+
+    private final HealthCheckEngine engine;
+    private final int port;
+    private final int threads;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public LiteHealthCheckServer(HealthCheckEngine engine, int port, int threads) {
+        this.engine = engine;
+        this.port = port;
+        this.threads = threads;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Starting ServiceHealthCheck Application (lite mode)");
+        }
+
+        Properties properties = loadProperties(args);
+        Configuration config = PropertiesBinder.bind(new Configuration(), properties);
+
+        final HealthCheckEngine engine = new HealthCheckEngine(config);
+        engine.start();
+
+        final LiteHealthCheckServer server = new LiteHealthCheckServer(engine,
+                Integer.parseInt(properties.getProperty("server.port", "8080").trim()),
+                Integer.parseInt(properties.getProperty("config.lite.threads", "4").trim()));
+        server.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                server.stop();
+                engine.shutdown();
+            }
+        }, "healthcheck-shutdown"));
+
+        StartupMetrics.log("lite");
+    }
+
+    public void start() throws IOException {
+        this.executor = Executors.newFixedThreadPool(Math.max(1, this.threads), new NamedThreadFactory("http"));
+        this.server = HttpServer.create(new InetSocketAddress(this.port), 0);
+        this.server.createContext("/", new HealthCheckHandler(this.engine));
+        this.server.setExecutor(this.executor);
+        this.server.start();
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Listening on port " + this.port + " with " + this.threads + " request threads");
+        }
+    }
+
+    public void stop() {
+        if (this.server != null) {
+            this.server.stop(1);
+        }
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads the properties from the same locations as the Spring mode, later locations override earlier ones: the
+     * defaults on the classpath, application.properties and config/application.properties in the working directory,
+     * system properties and finally command line arguments in the form <code>--key=value</code>.
+     */
+    static Properties loadProperties(String[] args) throws IOException {
+        Properties properties = new Properties();
+
+        InputStream defaults = LiteHealthCheckServer.class.getClassLoader().getResourceAsStream(PROPERTIES_FILE);
+        if (defaults != null) {
+            try {
+                properties.load(defaults);
+            } finally {
+                defaults.close();
+            }
+        }
+
+        loadFile(properties, new File(PROPERTIES_FILE));
+        loadFile(properties, new File("config", PROPERTIES_FILE));
+
+        properties.putAll(System.getProperties());
+
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new HealthCheckException("Invalid argument '" + arg + "', expected --key=value");
+            }
+            properties.setProperty(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return properties;
+    }
+
+    private static void loadFile(Properties properties, File file) throws IOException {
+        if (!file.isFile()) {
+            return;
+        }
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Loading configuration from " + file.getAbsolutePath());
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+    }
+}
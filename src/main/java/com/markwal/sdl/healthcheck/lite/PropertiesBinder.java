@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.lite;
+
+import com.markwal.sdl.healthcheck.HealthCheckException;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sets the {@link Value} annotated fields of an object from properties, so the configuration classes can be used
+ * without a Spring context. Only simple placeholders (<code>${key}</code> and <code>${key:default}</code>) are
+ * supported.
+ */
+public final class PropertiesBinder {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([^:}]+)(?::([^}]*))?}");
+
+    private PropertiesBinder() {
+    }
+
+    public static <T> T bind(T target, Properties properties) {
+        for (Field field : target.getClass().getDeclaredFields()) {
+            Value annotation = field.getAnnotation(Value.class);
+            if (annotation == null) {
+                continue;
+            }
+
+            Matcher matcher = PLACEHOLDER.matcher(annotation.value());
+            if (!matcher.matches()) {
+                throw new HealthCheckException("Unsupported value expression '" + annotation.value() + "' on field '"
+                        + field.getName() + "'");
+            }
+
+            String key = matcher.group(1);
+            String text = properties.getProperty(key, matcher.group(2));
+            if (text == null) {
+                throw new HealthCheckException("Missing configuration property '" + key + "'");
+            }
+
+            try {
+                field.setAccessible(true);
+                field.set(target, convert(key, text.trim(), field.getType()));
+            } catch (IllegalAccessException e) {
+                throw new HealthCheckException("Unable to set configuration property '" + key + "'", e);
+            }
+        }
+        return target;
+    }
+
+    private static Object convert(String key, String text, Class<?> type) {
+        try {
+            if (type == String.class) {
+                return text;
+            } else if (type == File.class) {
+                return text.isEmpty() ? null : new File(text);
+            } else if (type == int.class || type == Integer.class) {
+                return Integer.valueOf(text);
+            } else if (type == long.class || type == Long.class) {
+                return Long.valueOf(text);
+            } else if (type == double.class || type == Double.class) {
+                return Double.valueOf(text);
+            } else if (type == boolean.class || type == Boolean.class) {
+                return Boolean.valueOf(text);
+            }
+        } catch (NumberFormatException e) {
+            throw new HealthCheckException("Invalid value '" + text + "' for configuration property '" + key + "'", e);
+        }
+        throw new HealthCheckException("Unsupported type " + type.getName() + " for configuration property '" + key
+                + "'");
+    }
+}
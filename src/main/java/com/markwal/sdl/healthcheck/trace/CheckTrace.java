@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.trace;
+
+import org.apache.http.protocol.HttpContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The spans of a single sampled check. Spans are added by the checking thread and by the transport (connect and TLS
+ * handshake, possibly on the thread of a hedged request), the number of spans is bounded.
+ */
+public class CheckTrace {
+
+    /**
+     * The attribute of the HTTP context holding the trace of the request, used to trace connects.
+     */
+    public static final String CONTEXT_ATTRIBUTE = CheckTrace.class.getName();
+
+    private static final int MAX_SPANS = 32;
+
+    private final String serviceName;
+    private final long timestamp;
+    private final long startNanos;
+    private final List<TraceSpan> spans = new ArrayList<TraceSpan>();
+
+    public CheckTrace(String serviceName) {
+        this.serviceName = serviceName;
+        this.timestamp = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return The trace of the request executed with the context, or null if the request is not traced.
+     */
+    public static CheckTrace from(HttpContext context) {
+        if (context == null) {
+            return null;
+        }
+        Object trace = context.getAttribute(CONTEXT_ATTRIBUTE);
+        return trace instanceof CheckTrace ? (CheckTrace) trace : null;
+    }
+
+    /**
+     * Adds a span on the current thread.
+     *
+     * @param name  The name of the span.
+     * @param start The start of the span (as returned by {@link System#nanoTime()}).
+     * @param end   The end of the span (as returned by {@link System#nanoTime()}).
+     */
+    public void addSpan(String name, long start, long end) {
+        TraceSpan span = new TraceSpan(name, start - this.startNanos, end - start, Thread.currentThread().getId());
+        synchronized (this.spans) {
+            if (this.spans.size() < MAX_SPANS) {
+                this.spans.add(span);
+            }
+        }
+    }
+
+    public String getServiceName() {
+        return this.serviceName;
+    }
+
+    SlowCheck toSlowCheck(String outcome, String message, long durationNanos) {
+        List<TraceSpan> copy;
+        synchronized (this.spans) {
+            copy = new ArrayList<TraceSpan>(this.spans);
+        }
+        return new SlowCheck(this.serviceName, outcome, message, this.timestamp, durationNanos,
+                Collections.unmodifiableList(copy));
+    }
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.trace;
+
+import com.google.gson.Gson;
+import com.markwal.sdl.healthcheck.NamedThreadFactory;
+import com.markwal.sdl.healthcheck.event.CheckEvent;
+import com.markwal.sdl.healthcheck.event.CheckPhase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which checks are traced and keeps the traces of slow checks.
+ * <p>
+ * A sampled check records a span per phase (see {@link com.markwal.sdl.healthcheck.event.CheckPhase}) plus the
+ * connect and TLS handshake of new connections. When a check takes longer than the threshold it is kept in a bounded
+ * buffer (the oldest check is dropped) and optionally appended to a file in the Trace Event Format. The file is written
+ * by a single background writer (like the check event log), the slow checks are handed over through a bounded queue so
+ * checks never wait for the disk. A check that is not sampled has no trace, the only cost is the sampling decision; when
+ * it is slow its spans are made from the phase durations of the check event (without connect and TLS handshake).
+ */
+public class CheckTracer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CheckTracer.class);
+
+    private final double sampleRate;
+    private final long slowThresholdNanos;
+    private final int bufferSize;
+    private final File exportFile;
+    private final Deque<SlowCheck> slowChecks = new ArrayDeque<SlowCheck>();
+    private final BlockingQueue<SlowCheck> exportQueue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Gson gson = new Gson();
+    private Thread writer;
+    private volatile boolean running;
+
+    /**
+     * @param sampleRate    The fraction of checks that is traced, 0 disables tracing.
+     * @param slowThreshold The duration in milliseconds from which a check is kept.
+     * @param bufferSize    The maximum number of slow checks kept.
+     * @param exportFile    The file the slow checks are appended to, null to only keep them in memory.
+     */
+    public CheckTracer(double sampleRate, long slowThreshold, int bufferSize, File exportFile) {
+        this.sampleRate = sampleRate;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThreshold);
+        this.bufferSize = Math.max(1, bufferSize);
+        this.exportFile = exportFile;
+        this.exportQueue = new ArrayBlockingQueue<SlowCheck>(this.bufferSize);
+    }
+
+    /**
+     * Starts the writer of the export file, if there is one.
+     */
+    public void start() {
+        if (this.exportFile == null) {
+            return;
+        }
+
+        this.running = true;
+        this.writer = new NamedThreadFactory("trace-export").newThread(new Runnable() {
+            @Override
+            public void run() {
+                writeSlowChecks();
+            }
+        });
+        this.writer.start();
+    }
+
+    public void shutdown() {
+        this.running = false;
+        if (this.writer != null) {
+            this.writer.interrupt();
+        }
+    }
+
+    /**
+     * @return A new trace if the check is sampled, otherwise null.
+     */
+    public CheckTrace startTrace(String serviceName) {
+        if (this.sampleRate <= 0) {
+            return null;
+        }
+        if (this.sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= this.sampleRate) {
+            return null;
+        }
+        return new CheckTrace(serviceName);
+    }
+
+    /**
+     * Keeps the completed check if the check was slow, with the trace if the check was sampled.
+     *
+     * @param trace The trace of the check, null if the check was not sampled.
+     */
+    public void complete(CheckTrace trace, CheckEvent event) {
+        if (event.getTotalNanos() < this.slowThresholdNanos) {
+            return;
+        }
+
+        SlowCheck check;
+        if (trace != null) {
+            check = trace.toSlowCheck(event.getOutcome(), event.getMessage(), event.getTotalNanos());
+        } else {
+            check = toSlowCheck(event);
+        }
+        synchronized (this.slowChecks) {
+            if (this.slowChecks.size() >= this.bufferSize) {
+                this.slowChecks.removeLast();
+            }
+            this.slowChecks.addFirst(check);
+        }
+
+        if (this.exportFile != null && !this.exportQueue.offer(check)) {
+            this.dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Creates the slow check of a check that was not sampled, the phases are laid out one after the other on the
+     * current (checking) thread. DNS is part of the request, it is placed at the start of the request.
+     */
+    private static SlowCheck toSlowCheck(CheckEvent event) {
+        long thread = Thread.currentThread().getId();
+        List<TraceSpan> spans = new ArrayList<TraceSpan>();
+        long start = 0;
+        for (CheckPhase phase : CheckPhase.values()) {
+            long duration = event.getPhaseNanos(phase);
+            if (duration > 0) {
+                spans.add(new TraceSpan(phase.getKey(), start, duration, thread));
+            }
+            if (phase != CheckPhase.DNS) {
+                start += duration;
+            }
+        }
+        return new SlowCheck(event.getServiceName(), event.getOutcome(), event.getMessage(), event.getTimestamp(),
+                event.getTotalNanos(), Collections.unmodifiableList(spans));
+    }
+
+    /**
+     * @return The kept slow checks, the most recent first.
+     */
+    public List<SlowCheck> getSlowChecks() {
+        synchronized (this.slowChecks) {
+            return new ArrayList<SlowCheck>(this.slowChecks);
+        }
+    }
+
+    private void writeSlowChecks() {
+        List<SlowCheck> batch = new ArrayList<SlowCheck>();
+        while (this.running || !this.exportQueue.isEmpty()) {
+            try {
+                SlowCheck check = this.exportQueue.poll(1, TimeUnit.SECONDS);
+                if (check != null) {
+                    batch.add(check);
+                    this.exportQueue.drainTo(batch);
+                    this.export(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                // shutdown requested, write the remaining slow checks
+                this.running = false;
+            } catch (RuntimeException e) {
+                LOG.warn("Exception while exporting trace: " + e.getMessage(), e);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Appends the checks to the export file in the JSON Array Format, which allows the closing bracket to be missing
+     * so events can be appended to the file while it is being read.
+     */
+    private void export(List<SlowCheck> checks) {
+        long droppedChecks = this.dropped.getAndSet(0);
+        if (droppedChecks > 0) {
+            LOG.warn("Export queue full, " + droppedChecks + " slow checks were not exported");
+        }
+
+        boolean newFile = !this.exportFile.exists() || this.exportFile.length() == 0;
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(this.exportFile, true),
+                StandardCharsets.UTF_8)) {
+            if (newFile) {
+                writer.write("[\n");
+            }
+            for (SlowCheck check : checks) {
+                for (Map<String, Object> event : TraceEventFormat.toEvents(check)) {
+                    writer.write(this.gson.toJson(event));
+                    writer.write(",\n");
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to export trace to '" + this.exportFile + "': " + e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.trace;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.List;
+
+/**
+ * A completed trace of a check that took longer than the slow check threshold.
+ */
+public class SlowCheck {
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private final String serviceName;
+    private final String outcome;
+    private final String message;
+    private final long timestamp;
+    private final long durationNanos;
+    private final List<TraceSpan> spans;
+
+    public SlowCheck(String serviceName, String outcome, String message, long timestamp, long durationNanos,
+                     List<TraceSpan> spans) {
+        this.serviceName = serviceName;
+        this.outcome = outcome;
+        this.message = message;
+        this.timestamp = timestamp;
+        this.durationNanos = durationNanos;
+        this.spans = spans;
+    }
+
+    public String getServiceName() {
+        return this.serviceName;
+    }
+
+    public String getOutcome() {
+        return this.outcome;
+    }
+
+    public String getMessage() {
+        return this.message;
+    }
+
+    /**
+     * @return The start of the check in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     * @return The duration of the check in milliseconds.
+     */
+    public double getDuration() {
+        return this.durationNanos / NANOS_PER_MILLI;
+    }
+
+    @JsonIgnore
+    public long getDurationNanos() {
+        return this.durationNanos;
+    }
+
+    public List<TraceSpan> getSpans() {
+        return this.spans;
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.trace;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts slow checks to the Trace Event Format (complete events, phase 'X') which can be opened in
+ * chrome://tracing, Perfetto or Speedscope. Every check is an event with its spans as nested events, times are in
+ * microseconds since the epoch.
+ */
+public final class TraceEventFormat {
+
+    private static final int PROCESS_ID = 1;
+
+    private TraceEventFormat() {
+    }
+
+    /**
+     * @return The trace in the JSON Object Format.
+     */
+    public static Map<String, Object> toTrace(List<SlowCheck> checks) {
+        List<Map<String, Object>> events = new ArrayList<Map<String, Object>>();
+        for (SlowCheck check : checks) {
+            events.addAll(toEvents(check));
+        }
+
+        Map<String, Object> trace = new LinkedHashMap<String, Object>();
+        trace.put("traceEvents", events);
+        trace.put("displayTimeUnit", "ms");
+        return trace;
+    }
+
+    /**
+     * @return The events of a single check, the check itself first.
+     */
+    public static List<Map<String, Object>> toEvents(SlowCheck check) {
+        long start = check.getTimestamp() * 1000L;
+        long thread = check.getSpans().isEmpty() ? 0 : check.getSpans().get(0).getThread();
+
+        Map<String, Object> args = new LinkedHashMap<String, Object>();
+        args.put("outcome", check.getOutcome());
+        if (check.getMessage() != null) {
+            args.put("message", check.getMessage());
+        }
+
+        List<Map<String, Object>> events = new ArrayList<Map<String, Object>>();
+        events.add(createEvent(check.getServiceName(), start, check.getDurationNanos() / 1000.0, thread, args));
+        for (TraceSpan span : check.getSpans()) {
+            Map<String, Object> spanArgs = new LinkedHashMap<String, Object>();
+            spanArgs.put("service", check.getServiceName());
+            events.add(createEvent(span.getName(), start + span.getStartNanos() / 1000L,
+                    span.getDurationNanos() / 1000.0, span.getThread(), spanArgs));
+        }
+        return events;
+    }
+
+    private static Map<String, Object> createEvent(String name, long timestamp, double duration, long thread,
+                                                   Map<String, Object> args) {
+        Map<String, Object> event = new LinkedHashMap<String, Object>();
+        event.put("name", name);
+        event.put("cat", "check");
+        event.put("ph", "X");
+        event.put("ts", timestamp);
+        event.put("dur", duration);
+        event.put("pid", PROCESS_ID);
+        event.put("tid", thread);
+        event.put("args", args);
+        return event;
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.trace;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * A timed part of a traced check. The start is relative to the start of the check.
+ */
+public class TraceSpan {
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private final String name;
+    private final long startNanos;
+    private final long durationNanos;
+    private final long thread;
+
+    public TraceSpan(String name, long startNanos, long durationNanos, long thread) {
+        this.name = name;
+        this.startNanos = startNanos;
+        this.durationNanos = durationNanos;
+        this.thread = thread;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return The start of the span in milliseconds after the start of the check.
+     */
+    public double getStart() {
+        return this.startNanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @return The duration of the span in milliseconds.
+     */
+    public double getDuration() {
+        return this.durationNanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @return The id of the thread that executed the span, hedged requests run on a different thread.
+     */
+    public long getThread() {
+        return this.thread;
+    }
+
+    @JsonIgnore
+    public long getStartNanos() {
+        return this.startNanos;
+    }
+
+    @JsonIgnore
+    public long getDurationNanos() {
+        return this.durationNanos;
+    }
+
+}
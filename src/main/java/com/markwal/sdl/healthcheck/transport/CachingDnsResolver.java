@@ -0,0 +1,229 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck.transport;
+
+import com.markwal.sdl.healthcheck.NamedThreadFactory;
+import com.markwal.sdl.healthcheck.event.CheckEvent;
+import com.markwal.sdl.healthcheck.event.CheckPhase;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.util.InetAddressUtils;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DNS resolver that caches lookups, successful lookups for the positive TTL and failed lookups for the negative TTL.
+ * <p>
+ * Cached hosts are refreshed in the background before they expire, so checks do not wait for DNS. When a background
+ * refresh fails the previous addresses are kept, a slow or flaky DNS server then does not make the checks fail.
+ * <p>
+ * Lookups done by the connection manager while a check request is executed are recorded as the DNS phase of the check.
+ * Only the hosts the request actually connects to are resolved (the proxy, when the request goes through a proxy).
+ */
+public class CachingDnsResolver implements DnsResolver {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachingDnsResolver.class);
+
+    private static final ThreadLocal<CheckEvent> CURRENT_EVENT = new ThreadLocal<CheckEvent>();
+
+    private final DnsResolver delegate = SystemDefaultDnsResolver.INSTANCE;
+    private final Map<String, CachedLookup> cache = new ConcurrentHashMap<String, CachedLookup>();
+    private final long positiveTtl;
+    private final long negativeTtl;
+    private final TransportStats stats;
+    private final ScheduledExecutorService refresher;
+
+    /**
+     * @param positiveTtl The time in milliseconds a successful lookup is cached.
+     * @param negativeTtl The time in milliseconds a failed lookup is cached.
+     * @param stats       The transport statistics, updated with the number of lookups.
+     */
+    public CachingDnsResolver(long positiveTtl, long negativeTtl, TransportStats stats) {
+        this.positiveTtl = positiveTtl;
+        this.negativeTtl = negativeTtl;
+        this.stats = stats;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("dns-refresh"));
+
+        if (positiveTtl > 0) {
+            long refreshInterval = Math.max(1000, positiveTtl / 2);
+            this.refresher.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    refreshCache();
+                }
+            }, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sets the check of the request executed on the current thread, its DNS phase is updated by the lookups.
+     *
+     * @param event The event of the check, null when the request has been executed.
+     */
+    static void setCurrentEvent(CheckEvent event) {
+        if (event == null) {
+            CURRENT_EVENT.remove();
+        } else {
+            CURRENT_EVENT.set(event);
+        }
+    }
+
+    @Override
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        long start = System.nanoTime();
+        try {
+            CachedLookup lookup = this.cache.get(host);
+            if (lookup == null || lookup.isExpired()) {
+                // the background refresh did not run in time, a failed lookup still keeps the previous addresses
+                lookup = this.lookup(host, lookup);
+            }
+            return lookup.getAddresses(host);
+        } finally {
+            CheckEvent event = CURRENT_EVENT.get();
+            if (event != null) {
+                event.addPhase(CheckPhase.DNS, start, System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * @return The cached addresses of the host, null if the host is not cached, the lookup failed or has expired. The
+     * address of an IP address literal is returned without lookup.
+     */
+    public InetAddress[] resolveCached(String host) {
+        if (InetAddressUtils.isIPv4Address(host) || InetAddressUtils.isIPv6Address(host)) {
+            try {
+                return InetAddress.getAllByName(host);
+            } catch (UnknownHostException e) {
+                return null;
+            }
+        }
+
+        CachedLookup lookup = this.cache.get(host);
+        if (lookup == null || lookup.addresses == null || lookup.isExpired()) {
+            return null;
+        }
+        return lookup.addresses.clone();
+    }
+
+    /**
+     * Resolves the hosts in the background, so they are in the cache when the first check is executed. Other cached
+     * hosts (e.g. of services removed by a reload) are removed from the cache, so they are no longer refreshed.
+     *
+     * @param hosts The host names of all configured services.
+     */
+    public void preResolve(final Collection<String> hosts) {
+        this.refresher.execute(new Runnable() {
+            @Override
+            public void run() {
+                cache.keySet().retainAll(hosts);
+                for (String host : hosts) {
+                    lookup(host, cache.get(host));
+                }
+            }
+        });
+    }
+
+    public void shutdown() {
+        this.refresher.shutdownNow();
+    }
+
+    private CachedLookup lookup(String host, CachedLookup previous) {
+        CachedLookup lookup;
+        long start = System.currentTimeMillis();
+
+        try {
+            InetAddress[] addresses = this.delegate.resolve(host);
+            lookup = new CachedLookup(addresses, null, System.currentTimeMillis() + this.positiveTtl);
+            this.stats.dnsLookupCompleted(true);
+        } catch (UnknownHostException e) {
+            this.stats.dnsLookupCompleted(false);
+            if (previous != null && previous.addresses != null) {
+                LOG.warn("DNS lookup of '" + host + "' failed, keeping previous addresses: " + e.getMessage());
+                lookup = new CachedLookup(previous.addresses, null, System.currentTimeMillis() + this.positiveTtl);
+            } else {
+                lookup = new CachedLookup(null, e, System.currentTimeMillis() + this.negativeTtl);
+            }
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("DNS lookup of '" + host + "' took " + (System.currentTimeMillis() - start) + " ms");
+        }
+
+        this.cache.put(host, lookup);
+        return lookup;
+    }
+
+    /**
+     * Refreshes the successful lookups that expire soon. Failed lookups are not refreshed, they are removed when they
+     * have expired and looked up again when the host is used.
+     */
+    private void refreshCache() {
+        long refreshBefore = System.currentTimeMillis() + this.positiveTtl / 2;
+
+        for (Map.Entry<String, CachedLookup> entry : this.cache.entrySet()) {
+            if (entry.getValue().addresses == null) {
+                if (entry.getValue().isExpired()) {
+                    this.cache.remove(entry.getKey(), entry.getValue());
+                }
+            } else if (entry.getValue().expires <= refreshBefore) {
+                try {
+                    this.lookup(entry.getKey(), entry.getValue());
+                } catch (RuntimeException e) {
+                    LOG.warn("Exception while refreshing DNS lookup of '" + entry.getKey() + "': " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private static class CachedLookup {
+        private final InetAddress[] addresses;
+        private final UnknownHostException failure;
+        private final long expires;
+
+        private CachedLookup(InetAddress[] addresses, UnknownHostException failure, long expires) {
+            this.addresses = addresses;
+            this.failure = failure;
+            this.expires = expires;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= this.expires;
+        }
+
+        private InetAddress[] getAddresses(String host) throws UnknownHostException {
+            if (this.addresses == null) {
+                // a new exception, so the stack trace shows the current check
+                UnknownHostException exception = new UnknownHostException(host);
+                exception.initCause(this.failure);
+                throw exception;
+            }
+            return this.addresses.clone();
+        }
+    }
+
+}
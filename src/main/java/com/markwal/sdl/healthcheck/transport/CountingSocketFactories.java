@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck.transport;
+
+import com.markwal.sdl.healthcheck.HealthCheckException;
+import com.markwal.sdl.healthcheck.trace.CheckTrace;
+import org.apache.http.HttpHost;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContexts;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Socket factories of the probe transport that count the connections that are opened and the TLS handshakes.
+ * <p>
+ * All TLS connections are created from a single SSLContext, so its client session cache is shared and a new connection
+ * to a host that was connected before resumes the existing TLS session (an abbreviated handshake). The SSLContext is
+ * created for the transport, the session cache settings do not change the default SSLContext of the JVM.
+ */
+class CountingSocketFactories {
+
+    private static final int MAX_TRACKED_SESSIONS = 1000;
+
+    private CountingSocketFactories() {
+    }
+
+    static Registry<ConnectionSocketFactory> create(final TransportStats stats, int sessionCacheSize, int sessionTimeout) {
+        SSLContext sslContext;
+        try {
+            // uses the default trust store (javax.net.ssl.trustStore)
+            sslContext = SSLContexts.custom().build();
+        } catch (GeneralSecurityException e) {
+            throw new HealthCheckException("Unable to create SSL context: " + e.getMessage(), e);
+        }
+        SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+        if (sessionContext != null) {
+            sessionContext.setSessionCacheSize(sessionCacheSize);
+            sessionContext.setSessionTimeout(sessionTimeout);
+        }
+
+        ConnectionSocketFactory plain = new PlainConnectionSocketFactory() {
+            @Override
+            public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+                                        InetSocketAddress localAddress, HttpContext context) throws IOException {
+                long start = System.nanoTime();
+                Socket result = super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+                stats.connectionOpened();
+                traceSpan(context, "connect", start);
+                return result;
+            }
+        };
+
+        ConnectionSocketFactory ssl = new CountingSslSocketFactory(sslContext, stats);
+
+        return RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", plain)
+                .register("https", ssl)
+                .build();
+    }
+
+    private static void traceSpan(HttpContext context, String name, long start) {
+        CheckTrace trace = CheckTrace.from(context);
+        if (trace != null) {
+            trace.addSpan(name, start, System.nanoTime());
+        }
+    }
+
+    private static String[] split(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        return value.trim().split(" *, *");
+    }
+
+    private static class CountingSslSocketFactory extends SSLConnectionSocketFactory {
+
+        private final TransportStats stats;
+        // ids of the sessions that were established before, a handshake with a known id is a resumption
+        private final Set<ByteBuffer> knownSessions = Collections.newSetFromMap(
+                Collections.synchronizedMap(new LinkedHashMap<ByteBuffer, Boolean>() {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Boolean> eldest) {
+                        return this.size() > MAX_TRACKED_SESSIONS;
+                    }
+                }));
+
+        private CountingSslSocketFactory(SSLContext sslContext, TransportStats stats) {
+            // use the protocols and cipher suites from the system properties, like HttpClientBuilder.useSystemProperties()
+            super(sslContext, split(System.getProperty("https.protocols")), split(System.getProperty("https.cipherSuites")),
+                    SSLConnectionSocketFactory.getDefaultHostnameVerifier());
+            this.stats = stats;
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+                                    InetSocketAddress localAddress, HttpContext context) throws IOException {
+            long start = System.nanoTime();
+            Socket result = super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+            this.stats.connectionOpened();
+            traceSpan(context, "connect", start);
+            return result;
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context)
+                throws IOException {
+            // called by connectSocket, so the TLS handshake is a part of the connect span
+            long start = System.nanoTime();
+            Socket result = super.createLayeredSocket(socket, target, port, context);
+            traceSpan(context, "tls", start);
+
+            // the handshake has completed (startHandshake), counted here instead of by a listener, which the JSSE
+            // calls on a new thread for every handshake
+            if (result instanceof SSLSocket) {
+                ByteBuffer sessionId = ByteBuffer.wrap(((SSLSocket) result).getSession().getId());
+                boolean resumed = sessionId.hasRemaining() && !this.knownSessions.add(sessionId);
+                this.stats.tlsHandshakeCompleted(resumed);
+            }
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck.transport;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+
+/**
+ * The response of a (possibly hedged) request.
+ */
+public class HedgedResponse {
+
+    private final CloseableHttpResponse response;
+    private final boolean hedged;
+
+    HedgedResponse(CloseableHttpResponse response, boolean hedged) {
+        this.response = response;
+        this.hedged = hedged;
+    }
+
+    public CloseableHttpResponse getResponse() {
+        return this.response;
+    }
+
+    /**
+     * @return True if the response is the response of the extra (hedged) request.
+     */
+    public boolean isHedged() {
+        return this.hedged;
+    }
+
+}
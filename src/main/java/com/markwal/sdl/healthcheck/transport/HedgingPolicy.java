@@ -0,0 +1,262 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck.transport;
+
+import com.markwal.sdl.healthcheck.NamedThreadFactory;
+import com.markwal.sdl.healthcheck.event.CheckEvent;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hedged requests: when the first attempt has not returned a response after the 95th percentile latency of the
+ * service, a second attempt is started and the response that arrives first is used. This prevents a single lost
+ * packet or pause of the service from turning into a failed check.
+ * <p>
+ * The number of extra requests is limited in two ways: a second attempt is only started when both attempts fit in the
+ * latency budget of a request, and the extra requests may not exceed a fraction of all requests (the retry ratio).
+ * Requests are only hedged once the service has a minimum number of latency samples, and never before a minimum delay:
+ * the 95th percentile of a local or cached service can be 0 or 1 ms, which would duplicate almost every request.
+ */
+public class HedgingPolicy {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HedgingPolicy.class);
+
+    private final boolean enabledByDefault;
+    private final long latencyBudget;
+    private final long minDelay;
+    private final int minSamples;
+    private final RetryBudget retryBudget;
+    private final ExecutorService executor;
+
+    /**
+     * @param enabledByDefault True if requests are hedged for services that do not configure hedging.
+     * @param latencyBudget    The latency budget of a request in milliseconds.
+     * @param retryRatio       The maximum number of extra requests as a fraction of all requests.
+     * @param minDelay         The minimum time in milliseconds before a second attempt is started.
+     * @param minSamples       The number of latency samples a service needs before its requests are hedged.
+     */
+    public HedgingPolicy(boolean enabledByDefault, long latencyBudget, double retryRatio, long minDelay,
+                         int minSamples) {
+        this.enabledByDefault = enabledByDefault;
+        this.latencyBudget = latencyBudget;
+        this.minDelay = minDelay;
+        this.minSamples = minSamples;
+        this.retryBudget = new RetryBudget(retryRatio);
+        this.executor = Executors.newCachedThreadPool(new NamedThreadFactory("hedge"));
+    }
+
+    /**
+     * @param serviceSetting The hedging setting of the service, null if not configured.
+     * @return True if the requests of the service are hedged.
+     */
+    public boolean isEnabled(Boolean serviceSetting) {
+        if (serviceSetting != null) {
+            return serviceSetting;
+        }
+        return this.enabledByDefault;
+    }
+
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Executes a request, hedged if enabled and the service has enough latency samples.
+     *
+     * @param transport The transport used to execute the request.
+     * @param factory   Creates the request for each attempt.
+     * @param tracker   The latencies of the service, updated with the latency of this request.
+     * @param enabled   True if the request may be hedged.
+     * @param event     The event of the check, updated by the attempts (DNS phase and trace).
+     * @return The response, which must be released by the caller.
+     * @throws IOException If the request fails (if both attempts fail, the exception of the first failure).
+     */
+    public HedgedResponse execute(ProbeTransport transport, RequestFactory factory, LatencyTracker tracker,
+                                  boolean enabled, CheckEvent event) throws IOException {
+        this.retryBudget.requestExecuted();
+
+        long hedgeDelay = enabled ? this.getHedgeDelay(tracker) : -1;
+        if (hedgeDelay < 0 || hedgeDelay * 2 > this.latencyBudget) {
+            return new HedgedResponse(this.attempt(transport, factory.create(), tracker, false, event), false);
+        }
+
+        try {
+            return this.executeHedged(transport, factory, tracker, hedgeDelay, event);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for response");
+        }
+    }
+
+    /**
+     * @return The 95th percentile latency of the service, at least the minimum delay, or -1 if there are not enough
+     * samples.
+     */
+    private long getHedgeDelay(LatencyTracker tracker) {
+        if (tracker.getCount() < this.minSamples) {
+            return -1;
+        }
+        long percentile = tracker.getPercentile(95);
+        return percentile < 0 ? -1 : Math.max(this.minDelay, percentile);
+    }
+
+    private HedgedResponse executeHedged(ProbeTransport transport, RequestFactory factory, LatencyTracker tracker,
+                                         long hedgeDelay, CheckEvent event) throws IOException, InterruptedException {
+        CompletionService<CloseableHttpResponse> completionService =
+                new ExecutorCompletionService<CloseableHttpResponse>(this.executor);
+
+        HttpUriRequest primaryRequest = factory.create();
+        Future<CloseableHttpResponse> primary = completionService.submit(this.task(transport, primaryRequest, tracker,
+                true, event));
+        HttpUriRequest hedgeRequest = null;
+        Future<CloseableHttpResponse> hedge = null;
+
+        try {
+            Future<CloseableHttpResponse> first = completionService.poll(hedgeDelay, TimeUnit.MILLISECONDS);
+            if (first != null) {
+                return new HedgedResponse(getResponse(first), false);
+            }
+
+            if (!this.retryBudget.tryAcquire()) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Retry budget exhausted, not hedging request to " + primaryRequest.getURI());
+                }
+                return new HedgedResponse(getResponse(primary), false);
+            }
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("No response after " + hedgeDelay + " ms, hedging request to " + primaryRequest.getURI());
+            }
+
+            hedgeRequest = factory.create();
+            hedge = completionService.submit(this.task(transport, hedgeRequest, tracker, false, event));
+
+            first = completionService.take();
+            Future<CloseableHttpResponse> second = first == primary ? hedge : primary;
+            HttpUriRequest secondRequest = first == primary ? hedgeRequest : primaryRequest;
+
+            CloseableHttpResponse response;
+            try {
+                response = getResponse(first);
+            } catch (IOException | RuntimeException e) {
+                // the first attempt to complete failed, so the other attempt decides
+                try {
+                    return new HedgedResponse(getResponse(completionService.take()), second == hedge);
+                } catch (IOException | RuntimeException secondException) {
+                    throw e;
+                }
+            }
+
+            // the other attempt is no longer needed
+            this.discard(transport, secondRequest, second);
+            return new HedgedResponse(response, first == hedge);
+        } catch (InterruptedException e) {
+            // the check was cancelled, the attempts still hold (or will hold) a pooled connection
+            this.discard(transport, primaryRequest, primary);
+            if (hedge != null) {
+                this.discard(transport, hedgeRequest, hedge);
+            }
+            throw e;
+        }
+    }
+
+    private Callable<CloseableHttpResponse> task(final ProbeTransport transport, final HttpUriRequest request,
+                                                 final LatencyTracker tracker, final boolean recordAborted,
+                                                 final CheckEvent event) {
+        return new Callable<CloseableHttpResponse>() {
+            @Override
+            public CloseableHttpResponse call() throws IOException {
+                return attempt(transport, request, tracker, recordAborted, event);
+            }
+        };
+    }
+
+    /**
+     * Executes a single attempt and records its latency. A primary attempt that is aborted because the hedge won
+     * records the time until it was aborted (a lower bound of its latency, at least the hedge delay), leaving the slow
+     * attempts out would bias the percentile used as hedge delay low. An aborted hedge started late, its time until
+     * the abort says nothing about the latency of the service.
+     */
+    private CloseableHttpResponse attempt(ProbeTransport transport, HttpUriRequest request, LatencyTracker tracker,
+                                          boolean recordAborted, CheckEvent event) throws IOException {
+        long start = System.nanoTime();
+        try {
+            CloseableHttpResponse response = transport.execute(request, event);
+            tracker.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return response;
+        } catch (IOException | RuntimeException e) {
+            if (recordAborted && request.isAborted()) {
+                tracker.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Aborts an attempt that is no longer needed and releases its response (if it still returns one).
+     */
+    private void discard(ProbeTransport transport, HttpUriRequest request, Future<CloseableHttpResponse> attempt) {
+        request.abort();
+        this.releaseWhenDone(transport, attempt);
+    }
+
+    private void releaseWhenDone(final ProbeTransport transport, final Future<CloseableHttpResponse> attempt) {
+        this.executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    transport.release(attempt.get());
+                } catch (ExecutionException e) {
+                    // expected, the request was aborted
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    private static CloseableHttpResponse getResponse(Future<CloseableHttpResponse> attempt)
+            throws IOException, InterruptedException {
+        try {
+            return attempt.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck.transport;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent request latencies of a service to estimate latency percentiles.
+ */
+public class LatencyTracker {
+
+    private static final int MIN_SAMPLES = 10;
+
+    private final long[] samples;
+    private int count;
+    private int next;
+
+    public LatencyTracker(int size) {
+        this.samples = new long[Math.max(MIN_SAMPLES, size)];
+    }
+
+    public synchronized void record(long latency) {
+        this.samples[this.next] = latency;
+        this.next = (this.next + 1) % this.samples.length;
+        if (this.count < this.samples.length) {
+            this.count++;
+        }
+    }
+
+    /**
+     * @return The number of latencies kept, at most the size of the tracker.
+     */
+    public synchronized int getCount() {
+        return this.count;
+    }
+
+    /**
+     * @param percentile The percentile (between 0 and 100).
+     * @return The latency at the given percentile, or -1 if there are not enough samples yet.
+     */
+    public long getPercentile(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            if (this.count < MIN_SAMPLES) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(this.samples, this.count);
+        }
+
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck.transport;
+
+import com.markwal.sdl.healthcheck.event.CheckEvent;
+import com.markwal.sdl.healthcheck.trace.CheckTrace;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HTTP transport used for all probes and token requests.
+ * <p>
+ * A single client with a connection pool is shared by all service connections, so checks reuse the persistent
+ * (keep-alive) connection to a host instead of connecting (and, for https, doing a TLS handshake) for every check.
+ * When a new TLS connection is needed the cached TLS session is resumed. Host names are resolved through a DNS cache.
+ */
+public class ProbeTransport implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProbeTransport.class);
+
+    // remaining response bodies up to this size are read to keep the connection, larger ones close the connection
+    // (whatever the declared length, chunked responses have none)
+    private static final long MAX_DRAIN_LENGTH = 64 * 1024;
+
+    private final TransportStats stats = new TransportStats();
+    private final CachingDnsResolver dnsResolver;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+    private volatile RequestConfig requestConfig = createRequestConfig(1000, 1000, 1000);
+
+    /**
+     * @param maxConnectionsPerHost The maximum number of pooled connections to a single host.
+     * @param maxConnections        The maximum number of pooled connections.
+     * @param sessionCacheSize      The maximum number of cached TLS sessions.
+     * @param sessionTimeout        The time in seconds a TLS session can be resumed.
+     * @param dnsTtl                The time in milliseconds a successful DNS lookup is cached.
+     * @param dnsNegativeTtl        The time in milliseconds a failed DNS lookup is cached.
+     */
+    public ProbeTransport(int maxConnectionsPerHost, int maxConnections, int sessionCacheSize, int sessionTimeout,
+                          long dnsTtl, long dnsNegativeTtl) {
+        this.dnsResolver = new CachingDnsResolver(dnsTtl, dnsNegativeTtl, this.stats);
+        this.connectionManager = new PoolingHttpClientConnectionManager(
+                CountingSocketFactories.create(this.stats, sessionCacheSize, sessionTimeout), this.dnsResolver);
+        this.connectionManager.setMaxTotal(maxConnections);
+        this.setMaxConnectionsPerHost(maxConnectionsPerHost);
+        // connections that were idle for a while are checked before use, the server may have closed them
+        this.connectionManager.setValidateAfterInactivity(1000);
+
+        HttpClientBuilder builder = HttpClientBuilder.create();
+
+        // Use system properties if specified (e.g. for proxy)
+        builder.useSystemProperties();
+        builder.setConnectionManager(this.connectionManager);
+        builder.evictIdleConnections(60, TimeUnit.SECONDS);
+        this.client = builder.build();
+    }
+
+    private static RequestConfig createRequestConfig(int connectionRequestTimeout, int connectTimeout,
+                                                     int socketTimeout) {
+        return RequestConfig.custom()
+                .setConnectionRequestTimeout(connectionRequestTimeout).setConnectTimeout(connectTimeout)
+                .setSocketTimeout(socketTimeout).build();
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return this.connectionManager.getDefaultMaxPerRoute();
+    }
+
+    /**
+     * Changes the maximum number of pooled connections to a single host, the total is raised if it is lower.
+     */
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        if (this.connectionManager.getMaxTotal() < maxConnectionsPerHost) {
+            this.connectionManager.setMaxTotal(maxConnectionsPerHost);
+        }
+        this.connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+    }
+
+    /**
+     * @return The configuration (timeouts) for check requests, replaced as a whole when the timeouts are changed.
+     */
+    public RequestConfig getRequestConfig() {
+        return this.requestConfig;
+    }
+
+    /**
+     * Changes the timeouts of check requests, applies to requests created after the change.
+     *
+     * @param connectionRequestTimeout The time in milliseconds to wait for a connection from the pool.
+     * @param connectTimeout           The time in milliseconds to wait for a new connection to be established.
+     * @param socketTimeout            The maximum time in milliseconds between two packets of the response.
+     */
+    public void setTimeouts(int connectionRequestTimeout, int connectTimeout, int socketTimeout) {
+        this.requestConfig = createRequestConfig(connectionRequestTimeout, connectTimeout, socketTimeout);
+    }
+
+    /**
+     * Executes a request, the response must always be passed to {@link #release(CloseableHttpResponse)}.
+     */
+    public CloseableHttpResponse execute(HttpUriRequest request) throws IOException {
+        return this.execute(request, null);
+    }
+
+    /**
+     * Executes a request of a check. The DNS lookups the connection manager does for the request are added to the DNS
+     * phase of the check, if the check is traced new connections opened for the request are added to the trace.
+     *
+     * @param event The event of the check, null if the request is not part of a check.
+     */
+    public CloseableHttpResponse execute(HttpUriRequest request, CheckEvent event) throws IOException {
+        this.stats.requestExecuted();
+        if (event == null) {
+            return this.client.execute(request);
+        }
+
+        HttpClientContext context = HttpClientContext.create();
+        if (event.getTrace() != null) {
+            context.setAttribute(CheckTrace.CONTEXT_ATTRIBUTE, event.getTrace());
+        }
+        // the resolver is not passed the context, the request is executed on this thread
+        CachingDnsResolver.setCurrentEvent(event);
+        try {
+            return this.client.execute(request, context);
+        } finally {
+            CachingDnsResolver.setCurrentEvent(null);
+        }
+    }
+
+    /**
+     * Releases the connection of a response. If the unread part of the body is small it is read so the connection can
+     * be reused, otherwise the connection is closed.
+     *
+     * @param response The response, may be null.
+     */
+    public void release(CloseableHttpResponse response) {
+        if (response == null) {
+            return;
+        }
+
+        try {
+            HttpEntity entity = response.getEntity();
+            if (entity != null && !drain(entity) && LOG.isDebugEnabled()) {
+                LOG.debug("Remainder of response exceeds " + MAX_DRAIN_LENGTH + " bytes, connection is closed");
+            }
+        } catch (IOException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Unable to read remainder of response: " + e.getMessage());
+            }
+        }
+
+        try {
+            response.close();
+        } catch (IOException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Exception while closing response: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads the remainder of the response body, at most {@link #MAX_DRAIN_LENGTH} bytes. When the end of the body is
+     * reached the connection is returned to the pool.
+     *
+     * @return false if the body is larger, the connection is then closed by closing the response.
+     */
+    private static boolean drain(HttpEntity entity) throws IOException {
+        if (!entity.isStreaming()) {
+            return true;
+        }
+        if (entity.getContentLength() > MAX_DRAIN_LENGTH) {
+            return false;
+        }
+
+        InputStream in = entity.getContent();
+        byte[] buffer = new byte[4096];
+        long drained = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            drained += read;
+            if (drained > MAX_DRAIN_LENGTH) {
+                return false;
+            }
+        }
+        in.close();
+        return true;
+    }
+
+    /**
+     * Resolves a host name through the DNS cache of the transport.
+     */
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        return this.dnsResolver.resolve(host);
+    }
+
+    /**
+     * @return The addresses of the host if a successful lookup is cached, otherwise null (no lookup is done).
+     */
+    public InetAddress[] resolveCached(String host) {
+        return this.dnsResolver.resolveCached(host);
+    }
+
+    /**
+     * Resolves host names in the background, so they are cached before they are used. Hosts that are not in the
+     * collection are removed from the DNS cache.
+     */
+    public void preResolve(Collection<String> hosts) {
+        this.dnsResolver.preResolve(hosts);
+    }
+
+    public TransportStats getStats() {
+        return this.stats;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.dnsResolver.shutdown();
+        this.client.close();
+    }
+
+}
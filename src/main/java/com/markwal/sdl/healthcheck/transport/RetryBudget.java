@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck.transport;
+
+/**
+ * Limits the number of extra (hedged) requests to a fraction of all requests: every request adds the ratio to the
+ * budget and every extra request takes one from it. The budget is capped so a quiet period does not allow a burst of
+ * extra requests later on.
+ */
+public class RetryBudget {
+
+    private static final double MAX_TOKENS = 10;
+
+    private final double ratio;
+    private double tokens;
+
+    public RetryBudget(double ratio) {
+        this.ratio = ratio;
+    }
+
+    public synchronized void requestExecuted() {
+        this.tokens = Math.min(MAX_TOKENS, this.tokens + this.ratio);
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (this.tokens >= 1) {
+            this.tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.transport;
+
+/**
+ * The result of connecting to a single {@link TcpTarget}.
+ */
+public class TcpResult {
+
+    private static final TcpResult TIMED_OUT = new TcpResult(false, true, -1, "Connect timed out");
+
+    private final boolean connected;
+    private final boolean timedOut;
+    private final long connectNanos;
+    private final String message;
+
+    private TcpResult(boolean connected, boolean timedOut, long connectNanos, String message) {
+        this.connected = connected;
+        this.timedOut = timedOut;
+        this.connectNanos = connectNanos;
+        this.message = message;
+    }
+
+    static TcpResult connected(long connectNanos) {
+        return new TcpResult(true, false, connectNanos, null);
+    }
+
+    static TcpResult failed(String message) {
+        return new TcpResult(false, false, -1, message);
+    }
+
+    static TcpResult timedOut() {
+        return TIMED_OUT;
+    }
+
+    public boolean isConnected() {
+        return this.connected;
+    }
+
+    /**
+     * @return true if the connection was not established before the deadline of the sweep.
+     */
+    public boolean isTimedOut() {
+        return this.timedOut;
+    }
+
+    /**
+     * @return The time it took to establish the connection, -1 if no connection was established.
+     */
+    public long getConnectNanos() {
+        return this.connectNanos;
+    }
+
+    /**
+     * @return The reason the connection could not be established, null if it was established.
+     */
+    public String getMessage() {
+        return this.message;
+    }
+
+}
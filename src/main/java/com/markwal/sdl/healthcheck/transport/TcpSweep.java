@@ -0,0 +1,342 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.markwal.sdl.healthcheck.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks if the ports of a number of hosts accept connections. Connects are started without blocking and are completed
+ * by a single selector on the calling thread, each connect has its own deadline. At most a limited number of connects
+ * is in flight (so a large configuration does not run out of file descriptors), the next connect is started when one
+ * completes. A sweep takes one timeout as long as the targets fit in the limit. No data is sent, connections are
+ * closed as soon as they are established.
+ * <p>
+ * Host names are taken from the DNS cache of the transport. Hosts that are not cached are resolved in parallel on the
+ * given executor, the connects to a host are started as soon as it is resolved. Hosts that are not resolved within
+ * the timeout fail, so a slow or unreachable DNS server can't stall the sweep.
+ */
+public class TcpSweep {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TcpSweep.class);
+
+    private final ProbeTransport transport;
+    private final ExecutorService resolver;
+    private final int maxConnects;
+
+    /**
+     * @param transport   The transport used to resolve host names.
+     * @param resolver    The executor that resolves the host names that are not cached.
+     * @param maxConnects The maximum number of connects in flight.
+     */
+    public TcpSweep(ProbeTransport transport, ExecutorService resolver, int maxConnects) {
+        this.transport = transport;
+        this.resolver = resolver;
+        this.maxConnects = Math.max(1, maxConnects);
+    }
+
+    /**
+     * @param targets The hosts and ports to connect to.
+     * @param timeout The time in milliseconds to wait for the host names to be resolved and for each connection to be
+     *                established.
+     * @return The results, in the order of the targets.
+     */
+    public List<TcpResult> sweep(List<TcpTarget> targets, long timeout) throws IOException {
+        TcpResult[] results = new TcpResult[targets.size()];
+        InetAddress[] addresses = new InetAddress[targets.size()];
+        Deque<Integer> ready = new ArrayDeque<Integer>();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+        long resolveDeadline = System.nanoTime() + timeoutNanos;
+        List<HostLookup> lookups = new ArrayList<HostLookup>();
+        int pending = 0;
+        int timedOut = 0;
+
+        Selector selector = Selector.open();
+        try {
+            this.resolve(targets, addresses, ready, lookups, selector);
+            while (!lookups.isEmpty() || !ready.isEmpty() || pending > 0) {
+                if (!lookups.isEmpty()) {
+                    completeLookups(lookups, addresses, results, ready, System.nanoTime() - resolveDeadline >= 0);
+                }
+                while (!ready.isEmpty() && pending < this.maxConnects) {
+                    int index = ready.poll();
+                    if (this.startConnect(targets.get(index), addresses[index], index, timeoutNanos, selector,
+                            results)) {
+                        pending++;
+                    }
+                }
+                if (pending == 0 && lookups.isEmpty()) {
+                    continue;
+                }
+
+                // a completed lookup wakes up the selector
+                long now = System.nanoTime();
+                long remaining = pending > 0 ? nextDeadline(selector) - now : Long.MAX_VALUE;
+                if (!lookups.isEmpty()) {
+                    remaining = Math.min(remaining, resolveDeadline - now);
+                }
+                if (remaining > 0) {
+                    selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+                    Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                    while (selected.hasNext()) {
+                        SelectionKey key = selected.next();
+                        selected.remove();
+                        if (this.finishConnect(key, results)) {
+                            pending--;
+                        }
+                    }
+                }
+
+                // whatever is still connecting after its deadline timed out
+                now = System.nanoTime();
+                for (SelectionKey key : selector.keys()) {
+                    PendingConnect connect = (PendingConnect) key.attachment();
+                    if (key.isValid() && now - connect.deadline >= 0) {
+                        results[connect.index] = TcpResult.timedOut();
+                        key.cancel();
+                        closeQuietly((SocketChannel) key.channel());
+                        pending--;
+                        timedOut++;
+                    }
+                }
+            }
+        } finally {
+            for (HostLookup lookup : lookups) {
+                lookup.cancel();
+            }
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly((SocketChannel) key.channel());
+            }
+            selector.close();
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("TCP sweep of " + results.length + " targets completed, " + timedOut + " timed out");
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Takes the addresses of cached hosts (the targets are then ready to connect) and starts a lookup of each host
+     * that is not cached.
+     */
+    private void resolve(List<TcpTarget> targets, InetAddress[] addresses, Deque<Integer> ready,
+                         List<HostLookup> lookups, Selector selector) {
+        Map<String, HostLookup> hostLookups = new LinkedHashMap<String, HostLookup>();
+        for (int i = 0; i < addresses.length; i++) {
+            String host = targets.get(i).getHost();
+            HostLookup lookup = hostLookups.get(host);
+            if (lookup == null) {
+                InetAddress[] cached = this.transport.resolveCached(host);
+                if (cached != null) {
+                    addresses[i] = cached[0];
+                    ready.add(i);
+                    continue;
+                }
+                lookup = new HostLookup(host, selector);
+                hostLookups.put(host, lookup);
+            }
+            lookup.indexes.add(i);
+        }
+
+        for (HostLookup lookup : hostLookups.values()) {
+            lookups.add(lookup);
+            try {
+                lookup.future = this.resolver.submit(lookup);
+            } catch (RejectedExecutionException e) {
+                lookup.run();
+            }
+        }
+    }
+
+    /**
+     * Makes the targets of completed lookups ready to connect (or failed if the host is unknown). When the deadline
+     * has passed the lookups that are still running fail.
+     */
+    private static void completeLookups(List<HostLookup> lookups, InetAddress[] addresses, TcpResult[] results,
+                                        Deque<Integer> ready, boolean expired) {
+        Iterator<HostLookup> iterator = lookups.iterator();
+        while (iterator.hasNext()) {
+            HostLookup lookup = iterator.next();
+            if (lookup.done) {
+                for (int index : lookup.indexes) {
+                    if (lookup.address == null) {
+                        results[index] = TcpResult.failed("Unknown host: " + lookup.host);
+                    } else {
+                        addresses[index] = lookup.address;
+                        ready.add(index);
+                    }
+                }
+            } else if (expired) {
+                lookup.cancel();
+                for (int index : lookup.indexes) {
+                    results[index] = TcpResult.failed("DNS lookup of '" + lookup.host + "' timed out");
+                }
+            } else {
+                continue;
+            }
+            iterator.remove();
+        }
+    }
+
+    private static long nextDeadline(Selector selector) {
+        Long deadline = null;
+        for (SelectionKey key : selector.keys()) {
+            if (key.isValid()) {
+                long keyDeadline = ((PendingConnect) key.attachment()).deadline;
+                if (deadline == null || keyDeadline - deadline < 0) {
+                    deadline = keyDeadline;
+                }
+            }
+        }
+        return deadline == null ? System.nanoTime() : deadline;
+    }
+
+    /**
+     * @return true if the connect is pending and registered with the selector, false if the result is already known.
+     */
+    private boolean startConnect(TcpTarget target, InetAddress address, int index, long timeoutNanos,
+                                 Selector selector, TcpResult[] results) {
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            long start = System.nanoTime();
+            if (channel.connect(new InetSocketAddress(address, target.getPort()))) {
+                results[index] = TcpResult.connected(System.nanoTime() - start);
+                closeQuietly(channel);
+                return false;
+            }
+            channel.register(selector, SelectionKey.OP_CONNECT, new PendingConnect(index, start,
+                    start + timeoutNanos));
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            results[index] = TcpResult.failed(describe(e));
+            closeQuietly(channel);
+            return false;
+        }
+    }
+
+    /**
+     * @return true if the connect completed (successfully or not).
+     */
+    private boolean finishConnect(SelectionKey key, TcpResult[] results) {
+        PendingConnect connect = (PendingConnect) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        try {
+            if (!channel.finishConnect()) {
+                return false;
+            }
+            results[connect.index] = TcpResult.connected(System.nanoTime() - connect.start);
+        } catch (IOException e) {
+            results[connect.index] = TcpResult.failed(describe(e));
+        }
+
+        key.cancel();
+        closeQuietly(channel);
+        return true;
+    }
+
+    private static String describe(Exception e) {
+        return e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Exception while closing channel: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Resolves a host that is not cached, through the DNS cache of the transport.
+     */
+    private final class HostLookup implements Runnable {
+
+        private final String host;
+        private final Selector selector;
+        private final List<Integer> indexes = new ArrayList<Integer>();
+        private Future<?> future;
+        private volatile InetAddress address;
+        private volatile boolean done;
+
+        private HostLookup(String host, Selector selector) {
+            this.host = host;
+            this.selector = selector;
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.address = transport.resolve(this.host)[0];
+            } catch (UnknownHostException e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Unable to resolve '" + this.host + "': " + e.getMessage());
+                }
+            } finally {
+                this.done = true;
+                this.selector.wakeup();
+            }
+        }
+
+        private void cancel() {
+            if (this.future != null) {
+                this.future.cancel(true);
+            }
+        }
+    }
+
+    private static final class PendingConnect {
+
+        private final int index;
+        private final long start;
+        private final long deadline;
+
+        private PendingConnect(int index, long start, long deadline) {
+            this.index = index;
+            this.start = start;
+            this.deadline = deadline;
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck.transport;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the probe transport, used to verify that connections and TLS sessions are reused.
+ */
+public class TransportStats {
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong tlsHandshakes = new AtomicLong();
+    private final AtomicLong tlsResumed = new AtomicLong();
+    private final AtomicLong dnsLookups = new AtomicLong();
+    private final AtomicLong dnsFailures = new AtomicLong();
+
+    void requestExecuted() {
+        this.requests.incrementAndGet();
+    }
+
+    void connectionOpened() {
+        this.connections.incrementAndGet();
+    }
+
+    void tlsHandshakeCompleted(boolean resumed) {
+        this.tlsHandshakes.incrementAndGet();
+        if (resumed) {
+            this.tlsResumed.incrementAndGet();
+        }
+    }
+
+    void dnsLookupCompleted(boolean success) {
+        this.dnsLookups.incrementAndGet();
+        if (!success) {
+            this.dnsFailures.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return The number of requests (checks and token requests) executed.
+     */
+    public long getRequests() {
+        return this.requests.get();
+    }
+
+    /**
+     * @return The number of connections opened.
+     */
+    public long getConnections() {
+        return this.connections.get();
+    }
+
+    /**
+     * @return The fraction of requests that used an existing connection.
+     */
+    public double getConnectionReuseRate() {
+        long requestCount = this.requests.get();
+        if (requestCount == 0) {
+            return 0;
+        }
+        return Math.max(0, requestCount - this.connections.get()) / (double) requestCount;
+    }
+
+    /**
+     * @return The number of TLS handshakes (full and abbreviated).
+     */
+    public long getTlsHandshakes() {
+        return this.tlsHandshakes.get();
+    }
+
+    /**
+     * @return The number of TLS handshakes that resumed an existing session.
+     */
+    public long getTlsResumed() {
+        return this.tlsResumed.get();
+    }
+
+    /**
+     * @return The fraction of TLS handshakes that resumed an existing session.
+     */
+    public double getTlsResumptionRate() {
+        long handshakes = this.tlsHandshakes.get();
+        if (handshakes == 0) {
+            return 0;
+        }
+        return this.tlsResumed.get() / (double) handshakes;
+    }
+
+    /**
+     * @return The number of DNS lookups (cache misses and background refreshes).
+     */
+    public long getDnsLookups() {
+        return this.dnsLookups.get();
+    }
+
+    /**
+     * @return The number of DNS lookups that failed.
+     */
+    public long getDnsFailures() {
+        return this.dnsFailures.get();
+    }
+
+}
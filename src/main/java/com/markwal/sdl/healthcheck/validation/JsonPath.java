@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck.validation;
+
+import com.markwal.sdl.healthcheck.HealthCheckException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A (simplified) JSON path, supports member names and array indexes: <code>$.value[0].Id</code> or
+ * <code>$['@odata.context']</code>.
+ */
+public class JsonPath {
+
+    private final String expression;
+    private final List<Object> segments;
+
+    public JsonPath(String expression) {
+        this.expression = expression;
+        this.segments = Collections.unmodifiableList(parse(expression));
+    }
+
+    private static List<Object> parse(String expression) {
+        if (expression == null || !expression.startsWith("$")) {
+            throw new HealthCheckException("Invalid JSON path '" + expression + "': must start with '$'");
+        }
+
+        List<Object> result = new ArrayList<Object>();
+        int pos = 1;
+
+        while (pos < expression.length()) {
+            char c = expression.charAt(pos);
+            if (c == '.') {
+                int end = pos + 1;
+                while (end < expression.length() && expression.charAt(end) != '.' && expression.charAt(end) != '[') {
+                    end++;
+                }
+                if (end == pos + 1) {
+                    throw new HealthCheckException("Invalid JSON path '" + expression + "': empty member name at position " + pos);
+                }
+                result.add(expression.substring(pos + 1, end));
+                pos = end;
+            } else if (c == '[') {
+                int end = expression.indexOf(']', pos);
+                if (end == -1) {
+                    throw new HealthCheckException("Invalid JSON path '" + expression + "': missing ']'");
+                }
+                result.add(parseBracketSegment(expression, expression.substring(pos + 1, end).trim()));
+                pos = end + 1;
+            } else {
+                throw new HealthCheckException("Invalid JSON path '" + expression + "': unexpected '" + c + "' at position " + pos);
+            }
+        }
+
+        return result;
+    }
+
+    private static Object parseBracketSegment(String expression, String segment) {
+        if (segment.length() >= 2 && (segment.charAt(0) == '\'' || segment.charAt(0) == '"')
+                && segment.charAt(segment.length() - 1) == segment.charAt(0)) {
+            return segment.substring(1, segment.length() - 1);
+        }
+
+        try {
+            return Integer.valueOf(segment);
+        } catch (NumberFormatException e) {
+            throw new HealthCheckException("Invalid JSON path '" + expression + "': invalid index '" + segment + "'");
+        }
+    }
+
+    /**
+     * @return The path segments, a String for a member name and an Integer for an array index.
+     */
+    public List<Object> getSegments() {
+        return this.segments;
+    }
+
+    /**
+     * @return True if the given path is equal to, or a parent of, this path.
+     */
+    boolean startsWith(List<Object> path) {
+        return path.size() <= this.segments.size() && this.segments.subList(0, path.size()).equals(path);
+    }
+
+    @Override
+    public String toString() {
+        return this.expression;
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck.validation;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+import com.markwal.sdl.healthcheck.HealthCheckException;
+import com.markwal.sdl.healthcheck.config.AssertionConfig;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Evaluates the configured assertions on the response of a successful check request.
+ * <p>
+ * The response body is read as a stream and reading stops as soon as the outcome of all assertions is known, the
+ * remainder of the body is never read. An instance can be shared between threads.
+ */
+public class ResponseValidator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResponseValidator.class);
+
+    private final List<JsonPath> jsonPaths = new ArrayList<JsonPath>();
+    private final List<String> expectedValues = new ArrayList<String>();
+    private final List<String> expectedTexts = new ArrayList<String>();
+    private long maxResponseTime = -1;
+
+    public ResponseValidator(List<AssertionConfig> assertions) {
+        if (assertions == null) {
+            return;
+        }
+
+        for (AssertionConfig assertion : assertions) {
+            if (assertion == null) {
+                LOG.warn("Assertion configuration contains an empty array element which is ignored");
+            } else if (assertion.getJsonPath() != null) {
+                this.jsonPaths.add(new JsonPath(assertion.getJsonPath()));
+                this.expectedValues.add(assertion.getEquals());
+            } else if (assertion.getContains() != null) {
+                this.expectedTexts.add(assertion.getContains());
+            } else if (assertion.getMaxResponseTime() != null) {
+                this.maxResponseTime = this.maxResponseTime == -1 ? assertion.getMaxResponseTime()
+                        : Math.min(this.maxResponseTime, assertion.getMaxResponseTime());
+            } else {
+                throw new HealthCheckException("Invalid assertion: one of 'jsonPath', 'contains' or 'maxResponseTime' must be set");
+            }
+        }
+    }
+
+    /**
+     * @return True if the response body needs to be read to evaluate the assertions.
+     */
+    public boolean needsBody() {
+        return !this.jsonPaths.isEmpty() || !this.expectedTexts.isEmpty();
+    }
+
+    /**
+     * Validates a response.
+     *
+     * @param entity       The response entity (may be null if the response has no body).
+     * @param responseTime The time in milliseconds it took to receive the response.
+     * @return Null if all assertions pass, otherwise a message describing the first failed assertion.
+     * @throws IOException If the response body cannot be read.
+     */
+    public String validate(HttpEntity entity, long responseTime) throws IOException {
+        if (this.maxResponseTime != -1 && responseTime > this.maxResponseTime) {
+            return "Response time " + responseTime + " ms exceeds maximum of " + this.maxResponseTime + " ms";
+        }
+
+        if (!this.needsBody()) {
+            return null;
+        }
+
+        if (entity == null) {
+            return "Response has no body";
+        }
+
+        List<SubstringMatcher> textMatchers = new ArrayList<SubstringMatcher>();
+        for (String text : this.expectedTexts) {
+            textMatchers.add(new SubstringMatcher(text));
+        }
+
+        // the caller releases the connection, so the reader is deliberately not closed (which would drain the body)
+        ScanningReader reader = new ScanningReader(new InputStreamReader(entity.getContent(), this.getCharset(entity)),
+                textMatchers);
+
+        String failure = null;
+        if (!this.jsonPaths.isEmpty()) {
+            failure = this.validateJson(reader);
+        }
+
+        if (failure == null) {
+            failure = this.validateTexts(reader, textMatchers);
+        }
+
+        return failure;
+    }
+
+    private String validateJson(Reader reader) throws IOException {
+        StreamingJsonMatcher matcher = new StreamingJsonMatcher(this.jsonPaths);
+
+        try {
+            matcher.match(new JsonReader(reader));
+        } catch (MalformedJsonException | EOFException | IllegalStateException e) {
+            return "Response is not valid JSON: " + e.getMessage();
+        }
+
+        for (int i = 0; i < this.jsonPaths.size(); i++) {
+            if (!matcher.isFound(i)) {
+                return "JSON path '" + this.jsonPaths.get(i) + "' not found";
+            }
+
+            String expected = this.expectedValues.get(i);
+            if (expected != null && !expected.equals(matcher.getValue(i))) {
+                return "JSON path '" + this.jsonPaths.get(i) + "' has value '" + matcher.getValue(i)
+                        + "', expected '" + expected + "'";
+            }
+        }
+
+        return null;
+    }
+
+    private String validateTexts(ScanningReader reader, List<SubstringMatcher> textMatchers) throws IOException {
+        char[] buffer = new char[1024];
+        while (!reader.isAllFound() && reader.read(buffer, 0, buffer.length) != -1) {
+            // the reader feeds the matchers
+        }
+
+        for (SubstringMatcher matcher : textMatchers) {
+            if (!matcher.isFound()) {
+                return "Response does not contain '" + matcher.getPattern() + "'";
+            }
+        }
+
+        return null;
+    }
+
+    private Charset getCharset(HttpEntity entity) {
+        Charset charset = null;
+        try {
+            charset = ContentType.getOrDefault(entity).getCharset();
+        } catch (RuntimeException e) {
+            LOG.warn("Invalid content type in response: " + e.getMessage());
+        }
+
+        return charset != null ? charset : StandardCharsets.UTF_8;
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck.validation;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Reader that feeds all characters that pass through it to a number of substring matchers.
+ */
+class ScanningReader extends FilterReader {
+
+    private final List<SubstringMatcher> matchers;
+
+    ScanningReader(Reader in, List<SubstringMatcher> matchers) {
+        super(in);
+        this.matchers = matchers;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int c = super.read();
+        if (c != -1) {
+            for (SubstringMatcher matcher : this.matchers) {
+                matcher.accept((char) c);
+            }
+        }
+        return c;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        int count = super.read(buffer, offset, length);
+        if (count > 0) {
+            for (SubstringMatcher matcher : this.matchers) {
+                for (int i = offset; i < offset + count; i++) {
+                    matcher.accept(buffer[i]);
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // read the skipped characters so they are scanned as well
+        char[] buffer = new char[(int) Math.min(n, 1024)];
+        long skipped = 0;
+        while (skipped < n) {
+            int count = this.read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (count == -1) {
+                break;
+            }
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    boolean isAllFound() {
+        for (SubstringMatcher matcher : this.matchers) {
+            if (!matcher.isFound()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck.validation;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Looks up a number of JSON paths in a JSON document using the Gson streaming parser. Values that are not on the
+ * path to one of the requested paths are skipped without being materialized and parsing stops as soon as all paths
+ * have been found (or are known to be missing), so usually only the first part of the document is read.
+ * <p>
+ * An instance holds the results of a single document and is not thread safe.
+ */
+class StreamingJsonMatcher {
+
+    private final List<Match> matches = new ArrayList<Match>();
+    private int pending;
+
+    StreamingJsonMatcher(List<JsonPath> paths) {
+        for (JsonPath path : paths) {
+            this.matches.add(new Match(path));
+        }
+    }
+
+    /**
+     * Reads the document until all paths are decided.
+     *
+     * @param reader The reader for the JSON document.
+     * @throws IOException If the document cannot be read or is not valid JSON.
+     */
+    void match(JsonReader reader) throws IOException {
+        this.pending = this.matches.size();
+
+        this.readValue(reader, new ArrayList<Object>());
+
+        // paths that were not decided while reading the document do not exist
+        for (Match match : this.matches) {
+            match.decided = true;
+        }
+        this.pending = 0;
+    }
+
+    boolean isFound(int index) {
+        return this.matches.get(index).found;
+    }
+
+    /**
+     * @return The value of a path that points to a scalar value (null for an object or array).
+     */
+    String getValue(int index) {
+        return this.matches.get(index).value;
+    }
+
+    private void readValue(JsonReader reader, List<Object> path) throws IOException {
+        boolean target = false;
+        boolean descend = false;
+
+        for (Match match : this.matches) {
+            if (!match.decided && match.path.startsWith(path)) {
+                if (match.path.getSegments().size() == path.size()) {
+                    target = true;
+                } else {
+                    descend = true;
+                }
+            }
+        }
+
+        JsonToken token = reader.peek();
+        boolean container = token == JsonToken.BEGIN_OBJECT || token == JsonToken.BEGIN_ARRAY;
+
+        if (target) {
+            String value = container ? null : this.readScalar(reader, token);
+            this.resolve(path, value);
+            if (!container) {
+                this.resolveMissingBelow(path);
+                return;
+            }
+        }
+
+        if (!descend || !container) {
+            reader.skipValue();
+        } else if (token == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (this.pending > 0 && reader.hasNext()) {
+                path.add(reader.nextName());
+                this.readValue(reader, path);
+                path.remove(path.size() - 1);
+            }
+            if (this.pending == 0) {
+                return;
+            }
+            reader.endObject();
+        } else {
+            reader.beginArray();
+            int index = 0;
+            while (this.pending > 0 && reader.hasNext()) {
+                path.add(index++);
+                this.readValue(reader, path);
+                path.remove(path.size() - 1);
+            }
+            if (this.pending == 0) {
+                return;
+            }
+            reader.endArray();
+        }
+
+        this.resolveMissingBelow(path);
+    }
+
+    private String readScalar(JsonReader reader, JsonToken token) throws IOException {
+        switch (token) {
+            case BOOLEAN:
+                return Boolean.toString(reader.nextBoolean());
+            case NULL:
+                reader.nextNull();
+                return "null";
+            default:
+                // strings and numbers, numbers are returned as they appear in the document
+                return reader.nextString();
+        }
+    }
+
+    private void resolve(List<Object> path, String value) {
+        for (Match match : this.matches) {
+            if (!match.decided && match.path.getSegments().equals(path)) {
+                match.decided = true;
+                match.found = true;
+                match.value = value;
+                this.pending--;
+            }
+        }
+    }
+
+    /**
+     * Once a value is completely read, paths below it that were not found do not exist.
+     */
+    private void resolveMissingBelow(List<Object> path) {
+        for (Match match : this.matches) {
+            if (!match.decided && match.path.startsWith(path)) {
+                match.decided = true;
+                this.pending--;
+            }
+        }
+    }
+
+    private static class Match {
+        private final JsonPath path;
+        private boolean decided;
+        private boolean found;
+        private String value;
+
+        private Match(JsonPath path) {
+            this.path = path;
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 Mark van der Wal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.markwal.sdl.healthcheck.validation;
+
+/**
+ * Incremental substring search (Knuth-Morris-Pratt), characters are fed one at a time so the text never has to be
+ * kept in memory.
+ */
+class SubstringMatcher {
+
+    private final String pattern;
+    private final int[] failure;
+    private int matched;
+    private boolean found;
+
+    SubstringMatcher(String pattern) {
+        this.pattern = pattern;
+        this.failure = new int[pattern.length()];
+
+        int k = 0;
+        for (int i = 1; i < pattern.length(); i++) {
+            while (k > 0 && pattern.charAt(i) != pattern.charAt(k)) {
+                k = this.failure[k - 1];
+            }
+            if (pattern.charAt(i) == pattern.charAt(k)) {
+                k++;
+            }
+            this.failure[i] = k;
+        }
+
+        this.found = pattern.isEmpty();
+    }
+
+    void accept(char c) {
+        if (this.found) {
+            return;
+        }
+
+        while (this.matched > 0 && c != this.pattern.charAt(this.matched)) {
+            this.matched = this.failure[this.matched - 1];
+        }
+        if (c == this.pattern.charAt(this.matched)) {
+            this.matched++;
+        }
+        if (this.matched == this.pattern.length()) {
+            this.found = true;
+        }
+    }
+
+    boolean isFound() {
+        return this.found;
+    }
+
+    String getPattern() {
+        return this.pattern;
+    }
+
+}